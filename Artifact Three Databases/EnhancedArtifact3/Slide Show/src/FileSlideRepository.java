@@ -0,0 +1,506 @@
+//Daniel Escobedo
+//CS-499 SNHU
+//Artifact 3: Databases 
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+
+/**
+ * Slide repository kept in a local append-only log file, for kiosks that
+ * need their slides to survive a restart or power loss but cannot run
+ * MongoDB. The slides are held in memory as in InMemorySlideRepository;
+ * every write also appends its records to the log through a FileChannel.
+ *
+ * The log starts with a header, "SLOG" and the format version, followed by
+ * records framed as [length][CRC32C][BSON document], with the length and
+ * checksum little-endian like BSON itself. Opening maps the file and
+ * replays every record, which rebuilds the slides, versions and change log
+ * exactly as they were. A crash in the middle of a write leaves a torn
+ * tail: a last record that is cut short or fails its checksum, or space
+ * at the end that was never written. Replay stops there and the file is
+ * truncated. A damaged record with anything after it is not a torn write,
+ * so the repository refuses to open instead of dropping the records that
+ * follow it. Files written before records were framed
+ * are read as plain BSON and rewritten in the current format.
+ *
+ * Writes use group commit: a write appends its records and applies them
+ * under the repository lock, then waits outside it until they are forced
+ * to disk. One waiting writer forces the file for everyone waiting, so
+ * concurrent writers share a single force instead of queueing for one
+ * each. A write returns only once it is on disk, and the change log only
+ * hands out versions that are. If a force fails, nothing after it can be
+ * trusted to be on disk, so the repository refuses further writes until
+ * it is reopened from the file.
+ *
+ * Updates and deletes leave superseded records behind, so once the log
+ * has doubled since it was last compacted a background thread rewrites it
+ * as a snapshot of the current state. The snapshot is written to a
+ * temporary file without holding the lock, the records appended meanwhile
+ * are copied after it, and the file is forced and renamed over the log, so
+ * a crash at any point leaves either the old log or the new one.
+ *
+ * Configuration (system properties):
+ *   slideshow.repository.sync          false to skip forcing writes to disk (default true)
+ *   slideshow.repository.compactBytes  size below which the log is never compacted (default 1048576)
+ */
+public class FileSlideRepository extends InMemorySlideRepository {
+    private static final DocumentCodec CODEC = new DocumentCodec();
+    private static final int MAGIC = 0x474F4C53; // "SLOG" when read as little-endian bytes
+    private static final int FORMAT_VERSION = 2;
+    private static final int FILE_HEADER_BYTES = 8;
+    private static final int RECORD_HEADER_BYTES = 8; // Length and checksum
+    private static final int MIN_RECORD_BYTES = 5; // An empty BSON document
+
+    private final Path path;
+    private final boolean sync = Boolean.parseBoolean(System.getProperty("slideshow.repository.sync", "true"));
+    private final long compactBytes = Long.getLong("slideshow.repository.compactBytes", 1L << 20);
+    private final Object compactLock = new Object();
+    private FileChannel channel;
+    private ExecutorService compactor;
+    private boolean compacting;
+    private long compactedSize;
+
+    // Group commit: writes are numbered as they are appended; guarded by syncLock
+    private final Object syncLock = new Object();
+    private long appendedWrites;
+    private long appendedVersion;
+    private long durableWrites;
+    private volatile long durableVersion;
+    private boolean syncing;
+    private volatile IOException syncFailure;
+
+    /**
+     * Constructor for FileSlideRepository.
+     * @param path the file, created on open if it does not exist
+     */
+    public FileSlideRepository(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Opens the log and replays it into memory.
+     * @throws IOException if the file cannot be read or is not a slide log
+     */
+    @Override
+    public void open() throws IOException {
+        boolean legacy;
+        synchronized (this) {
+            legacy = replay();
+            long version = getCollectionVersion().getLong("version");
+            synchronized (syncLock) {
+                appendedVersion = version;
+                durableVersion = version;
+                syncFailure = null;
+            }
+            compactor = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "slide-log-compactor");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        if (legacy) {
+            System.err.println("Rewriting " + path + " in the checksummed log format");
+            compact();
+        }
+    }
+
+    /**
+     * Maps the file and applies every whole record in it.
+     * @return true if the file is in the format without checksums
+     * @throws IOException if a record before the end of the file is damaged
+     */
+    private boolean replay() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Slide file is larger than 2 GB: " + path);
+        }
+        if (size == 0) {
+            writeFully(channel, new ByteBuffer[] {fileHeader()});
+            channel.force(false);
+            compactedSize = FILE_HEADER_BYTES;
+            return false;
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        boolean legacy = size < FILE_HEADER_BYTES || buffer.getInt(0) != MAGIC;
+        if (!legacy && buffer.getInt(4) != FORMAT_VERSION) {
+            throw new IOException("Unsupported slide log format " + buffer.getInt(4) + ": " + path);
+        }
+
+        // Plain BSON documents carry their own length; framed records add a checksum
+        int headerBytes = legacy ? 0 : RECORD_HEADER_BYTES;
+        int position = legacy ? 0 : FILE_HEADER_BYTES;
+        int records = 0;
+        while (size - position >= Math.max(4, headerBytes)) {
+            int length = buffer.getInt(position);
+            int start = position + headerBytes;
+            if (length < MIN_RECORD_BYTES || length > size - start) {
+                break;
+            }
+            byte[] bytes = new byte[length];
+            buffer.get(start, bytes);
+            if (!legacy && buffer.getInt(position + 4) != checksum(bytes)) {
+                break;
+            }
+            apply(new RawBsonDocument(bytes).decode(CODEC));
+            position = start + length;
+            records++;
+        }
+        if (position < size) {
+            if (!tornTail(buffer, position, size, headerBytes)) {
+                channel.close();
+                channel = null;
+                throw new IOException("Slide log is damaged at byte " + position + " of " + size + ", with records after it: "
+                        + path + ". Restore it from a backup, or move it aside to start with no slides");
+            }
+            System.err.println("Dropping " + (size - position) + " bytes of incomplete records at the end of " + path);
+            channel.truncate(position);
+        }
+        channel.position(position);
+        compactedSize = position;
+        System.err.println("Loaded " + records + " slide records from " + path);
+        return legacy;
+    }
+
+    /**
+     * Checks whether the bytes from a record that could not be read to the
+     * end of the file are what a crash during an append leaves: a record
+     * cut short by the end of the file, or space the file grew by that was
+     * never written.
+     */
+    private static boolean tornTail(ByteBuffer buffer, int position, long size, int headerBytes) {
+        if (size - position < Math.max(4, headerBytes)) {
+            return true;
+        }
+        int length = buffer.getInt(position);
+        if (length >= MIN_RECORD_BYTES && position + headerBytes + (long) length >= size) {
+            return true;
+        }
+        for (int i = position; i < size; i++) {
+            if (buffer.get(i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stops background compaction and closes the log.
+     */
+    @Override
+    public void close() {
+        ExecutorService stopping;
+        synchronized (this) {
+            stopping = compactor;
+            compactor = null;
+        }
+        if (stopping != null) {
+            stopping.shutdown();
+            try {
+                stopping.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    System.err.println("Failed to close " + path + ": " + e.getMessage());
+                }
+                channel = null;
+            }
+        }
+    }
+
+    @Override
+    public Document addSlide(String imagePath, String description) {
+        Document slide = super.addSlide(imagePath, description);
+        awaitDurable();
+        return slide;
+    }
+
+    @Override
+    public Document updateSlide(String id, String imagePath, String description, Long expectedRev) {
+        Document slide = super.updateSlide(id, imagePath, description, expectedRev);
+        if (slide != null) {
+            awaitDurable();
+        }
+        return slide;
+    }
+
+    @Override
+    public boolean deleteSlide(String id) {
+        boolean deleted = super.deleteSlide(id);
+        if (deleted) {
+            awaitDurable();
+        }
+        return deleted;
+    }
+
+    @Override
+    public List<Document> bulkWriteSlides(List<Document> operations, int batchSize, boolean ordered) {
+        List<Document> results = super.bulkWriteSlides(operations, batchSize, ordered);
+        awaitDurable();
+        return results;
+    }
+
+    /**
+     * Appends the records in one gathering write. They are forced to disk
+     * afterwards, by awaitDurable, once the lock has been released.
+     */
+    @Override
+    protected void persist(List<Document> records) throws IOException {
+        if (channel == null) {
+            throw new IOException("Slide file is not open: " + path);
+        }
+        if (syncFailure != null) {
+            throw new IOException("Slide file could not be synced and must be reopened: " + path, syncFailure);
+        }
+        ByteBuffer[] buffers = frame(records);
+        long start = channel.position();
+        try {
+            writeFully(channel, buffers);
+        } catch (IOException e) {
+            channel.truncate(start); // Leave no partial record behind
+            channel.position(start);
+            throw e;
+        }
+        synchronized (syncLock) {
+            appendedWrites++;
+            appendedVersion += records.size();
+        }
+        if (!compacting && compactor != null && channel.position() >= Math.max(compactBytes, 2 * compactedSize)) {
+            compacting = true;
+            compactor.execute(this::compactInBackground);
+        }
+    }
+
+    /**
+     * Hands out only versions that are on disk, so a client never sees a
+     * version that a crash could take back and a later write reuse.
+     */
+    @Override
+    protected long committedVersion() {
+        return sync ? Math.min(durableVersion, super.committedVersion()) : super.committedVersion();
+    }
+
+    /**
+     * Waits until every record appended so far is on disk. The first waiter
+     * to find no force in progress forces the file for all the writes
+     * appended by then; the others wait for it and return together.
+     * @throws UncheckedIOException if the file could not be forced
+     */
+    private void awaitDurable() {
+        if (!sync) {
+            return;
+        }
+        boolean interrupted = false;
+        long target;
+        synchronized (syncLock) {
+            target = appendedWrites;
+        }
+        try {
+            while (true) {
+                FileChannel forcing;
+                long writes;
+                long version;
+                synchronized (syncLock) {
+                    if (durableWrites >= target) {
+                        return;
+                    }
+                    if (syncFailure != null) {
+                        throw new UncheckedIOException("Failed to save slide changes", syncFailure);
+                    }
+                    if (syncing) {
+                        try {
+                            syncLock.wait();
+                        } catch (InterruptedException e) {
+                            interrupted = true; // The write is applied, so see it through to disk
+                        }
+                        continue;
+                    }
+                    if (channel == null) {
+                        throw new UncheckedIOException(new IOException("Slide file was closed before it was synced: " + path));
+                    }
+                    syncing = true;
+                    forcing = channel;
+                    writes = appendedWrites;
+                    version = appendedVersion;
+                }
+
+                IOException failure = null;
+                try {
+                    forcing.force(false);
+                } catch (IOException e) {
+                    failure = e;
+                }
+                synchronized (syncLock) {
+                    syncing = false;
+                    if (failure == null) {
+                        durableWrites = Math.max(durableWrites, writes);
+                        durableVersion = Math.max(durableVersion, version);
+                    } else {
+                        syncFailure = failure;
+                        System.err.println("Failed to sync " + path + ": " + failure.getMessage());
+                    }
+                    syncLock.notifyAll();
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void compactInBackground() {
+        try {
+            compact();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Failed to compact " + path + ": " + e.getMessage());
+        } finally {
+            synchronized (this) {
+                compacting = false;
+            }
+        }
+    }
+
+    /**
+     * Rewrites the log as a snapshot of the current state, dropping change
+     * log entries that a later change to the same slide supersedes. The
+     * snapshot is written and forced without holding the lock; the lock is
+     * only held to take the snapshot and, at the end, to copy the records
+     * appended since after it and rename the new file over the log.
+     * @throws IOException if the new log cannot be written, in which case the old one is kept
+     */
+    public void compact() throws IOException {
+        synchronized (compactLock) {
+            List<Document> snapshot;
+            long from;
+            synchronized (this) {
+                if (channel == null) {
+                    throw new IOException("Slide file is not open: " + path);
+                }
+                compactChanges(Integer.MAX_VALUE); // Only the latest change to each slide is worth keeping
+                snapshot = snapshot();
+                from = channel.position();
+            }
+
+            Path temp = path.resolveSibling(path.getFileName() + ".compact");
+            FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            boolean replaced = false;
+            try {
+                writeFully(out, new ByteBuffer[] {fileHeader()});
+                writeFully(out, frame(snapshot));
+                out.force(false);
+                synchronized (this) {
+                    long end = channel.position();
+                    for (long copied = 0; copied < end - from; ) {
+                        copied += channel.transferTo(from + copied, end - from - copied, out);
+                    }
+                    out.force(false);
+                    synchronized (syncLock) {
+                        while (syncing) {
+                            try {
+                                syncLock.wait();
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                                throw new IOException("Interrupted while compacting " + path, e);
+                            }
+                        }
+                        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                        replaced = true;
+                        syncDirectory();
+                        FileChannel old = channel;
+                        channel = out;
+                        old.close();
+                        // Everything appended so far is in the forced new log
+                        durableWrites = appendedWrites;
+                        durableVersion = appendedVersion;
+                        syncLock.notifyAll();
+                    }
+                    System.err.println("Compacted " + path + " from " + end + " to " + out.size() + " bytes");
+                    compactedSize = out.size();
+                }
+            } finally {
+                if (!replaced) {
+                    out.close();
+                    Files.deleteIfExists(temp);
+                }
+            }
+        }
+    }
+
+    /**
+     * Forces the rename of the new log to disk. Not every platform can
+     * open a directory, in which case the rename is left to the OS.
+     */
+    private void syncDirectory() {
+        Path directory = path.toAbsolutePath().getParent();
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // The rename is still atomic, only not yet known to be on disk
+        }
+    }
+
+    private static ByteBuffer fileHeader() {
+        return ByteBuffer.allocate(FILE_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(MAGIC).putInt(FORMAT_VERSION).flip();
+    }
+
+    /**
+     * Encodes each record as BSON behind its length and checksum.
+     */
+    private static ByteBuffer[] frame(Collection<Document> records) {
+        ByteBuffer[] buffers = new ByteBuffer[records.size() * 2];
+        int i = 0;
+        for (Document record : records) {
+            ByteBuffer body = new RawBsonDocument(record, CODEC).getByteBuffer().asNIO();
+            CRC32C crc = new CRC32C();
+            crc.update(body.duplicate());
+            buffers[i++] = ByteBuffer.allocate(RECORD_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN)
+                    .putInt(body.remaining()).putInt((int) crc.getValue()).flip();
+            buffers[i++] = body;
+        }
+        return buffers;
+    }
+
+    private static int checksum(byte[] bytes) {
+        CRC32C crc = new CRC32C();
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer[] buffers) throws IOException {
+        long total = 0;
+        for (ByteBuffer buffer : buffers) {
+            total += buffer.remaining();
+        }
+        for (long written = 0; written < total; ) {
+            written += channel.write(buffers);
+        }
+    }
+}
@@ -0,0 +1,245 @@
+//Daniel Escobedo
+//CS-499 SNHU
+//Artifact 3: Databases 
+
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Graphics;
+import java.awt.LayoutManager;
+import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+
+/**
+ * This class records frame times for the Swing SlideShow: how long each
+ * slide change takes from the navigation action until the new frame has
+ * been laid out and painted, and the duration of every layout and paint
+ * pass, as histograms that report percentiles. Recording costs a few clock
+ * reads per frame, so it is always on; the summary is printed at exit when
+ * -Dslideshow.frameStats=true.
+ */
+public class FrameStats {
+
+    private final Histogram transitions = new Histogram();
+    private final Histogram layouts = new Histogram();
+    private final Histogram paints = new Histogram();
+    private long navigationStart; // 0 when no slide change is waiting to be painted
+    private int paintDepth; // Nested timed paints are counted once, by the outermost
+
+    /**
+     * Marks the start of a slide change. If an earlier change has not been
+     * painted yet, the frame is timed from the earlier one.
+     * Must be called on the event dispatch thread.
+     */
+    public void navigationStarted() {
+        if (navigationStart == 0) {
+            navigationStart = System.nanoTime();
+        }
+    }
+
+    /**
+     * Ends the current slide change once Swing has validated and painted the
+     * new frame. Swing queues its layout and paint work when components are
+     * revalidated and repainted, so a task queued after that runs once the
+     * frame is on screen. Must be called on the event dispatch thread, after
+     * the display has been updated.
+     */
+    public void navigationQueued() {
+        if (navigationStart == 0) {
+            return;
+        }
+        SwingUtilities.invokeLater(this::navigationPainted);
+    }
+
+    /**
+     * Ends the current slide change now. Used directly when frames are
+     * rendered synchronously, such as offscreen.
+     */
+    public void navigationPainted() {
+        if (navigationStart != 0) {
+            transitions.record(System.nanoTime() - navigationStart);
+            navigationStart = 0;
+        }
+    }
+
+    /**
+     * Drops the current slide change without recording it, for navigation
+     * that ends up showing nothing new.
+     */
+    public void navigationCancelled() {
+        navigationStart = 0;
+    }
+
+    /**
+     * Marks the start of a timed paint pass. Must be called on the event
+     * dispatch thread and paired with paintFinished.
+     * @return The start time to pass to paintFinished
+     */
+    public long paintStarted() {
+        return paintDepth++ == 0 ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records a paint pass, unless it ran inside another timed paint.
+     * @param start The value returned by paintStarted
+     */
+    public void paintFinished(long start) {
+        if (--paintDepth == 0) {
+            paints.record(System.nanoTime() - start);
+        }
+    }
+
+    public Histogram getTransitions() { return transitions; }
+    public Histogram getLayouts() { return layouts; }
+    public Histogram getPaints() { return paints; }
+
+    /**
+     * Prints the summary when the slideshow.frameStats property is set.
+     */
+    public void printSummaryIfEnabled() {
+        if (Boolean.getBoolean("slideshow.frameStats")) {
+            System.out.println(this);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Frame times (ms)\n"
+                + "  transition " + transitions + "\n"
+                + "  layout     " + layouts + "\n"
+                + "  paint      " + paints;
+    }
+
+    /**
+     * A panel that times its own layout and paint passes, including those of
+     * its children. Used as the content pane so each pass covers the whole
+     * slide area.
+     */
+    public static class FramePanel extends JPanel {
+        private static final long serialVersionUID = 1L;
+        private final FrameStats stats;
+
+        public FramePanel(LayoutManager layout, FrameStats stats) {
+            super(layout);
+            this.stats = stats;
+        }
+
+        @Override
+        protected void validateTree() {
+            long start = System.nanoTime();
+            super.validateTree();
+            stats.layouts.record(System.nanoTime() - start);
+        }
+
+        /**
+         * Lays out this panel and everything in it now, timed as one layout
+         * pass. validate() does nothing for a panel that is not in a
+         * displayed window, so offscreen rendering calls this instead.
+         */
+        public void layoutNow() {
+            long start = System.nanoTime();
+            layoutTree(this);
+            stats.layouts.record(System.nanoTime() - start);
+        }
+
+        private static void layoutTree(Container container) {
+            container.doLayout();
+            for (Component child : container.getComponents()) {
+                if (child instanceof Container) {
+                    layoutTree((Container) child);
+                }
+            }
+        }
+
+        @Override
+        public void paint(Graphics g) {
+            long start = stats.paintStarted();
+            try {
+                super.paint(g);
+            } finally {
+                stats.paintFinished(start);
+            }
+        }
+    }
+
+    /**
+     * A histogram of durations with buckets that grow geometrically, so it
+     * covers microseconds to minutes in a fixed array with about 6% error.
+     * Time Complexity: O(1) to record, O(buckets) for a percentile
+     */
+    public static class Histogram {
+        // 16 sub-buckets per power of two of microseconds
+        private static final int SUB_BUCKET_BITS = 4;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private final long[] counts = new long[64 * SUB_BUCKETS];
+        private long count;
+        private long totalNanos;
+        private long maxNanos;
+
+        /**
+         * Adds a duration to the histogram.
+         * @param nanos The duration in nanoseconds
+         */
+        public synchronized void record(long nanos) {
+            long micros = Math.max(0, nanos / 1000);
+            counts[bucket(micros)]++;
+            count++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+        }
+
+        /**
+         * Returns an upper bound for the given percentile.
+         * @param percentile The percentile, between 0 and 100
+         * @return The duration in milliseconds, or 0 if nothing was recorded
+         */
+        public synchronized double percentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(percentile / 100.0 * count);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= Math.max(1, rank)) {
+                    return Math.min(upperBound(i), maxNanos / 1000) / 1000.0;
+                }
+            }
+            return maxNanos / 1e6;
+        }
+
+        public synchronized long getCount() { return count; }
+        public synchronized double getMean() { return count == 0 ? 0 : totalNanos / 1e6 / count; }
+        public synchronized double getMax() { return maxNanos / 1e6; }
+
+        /**
+         * Values below SUB_BUCKETS get a bucket each; above that, each power
+         * of two is split into SUB_BUCKETS equal buckets.
+         */
+        private static int bucket(long micros) {
+            if (micros < SUB_BUCKETS) {
+                return (int) micros;
+            }
+            int magnitude = 63 - Long.numberOfLeadingZeros(micros) - SUB_BUCKET_BITS + 1;
+            int sub = (int) (micros >>> (magnitude - 1)) & (SUB_BUCKETS - 1);
+            return magnitude * SUB_BUCKETS + sub;
+        }
+
+        /**
+         * The largest value in microseconds that falls into a bucket.
+         */
+        private static long upperBound(int bucket) {
+            int magnitude = bucket / SUB_BUCKETS;
+            int sub = bucket % SUB_BUCKETS;
+            if (magnitude == 0) {
+                return sub;
+            }
+            return ((long) (SUB_BUCKETS + sub + 1) << (magnitude - 1)) - 1;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return String.format("count=%d mean=%.2f p50=%.2f p90=%.2f p99=%.2f max=%.2f",
+                    count, getMean(), percentile(50), percentile(90), percentile(99), getMax());
+        }
+    }
+}
@@ -0,0 +1,448 @@
+//Daniel Escobedo
+//CS-499 SNHU
+//Artifact 3: Databases 
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+/**
+ * Slide repository held entirely in memory, for kiosk nodes that only show
+ * a deck and for measuring the application without a database. Nothing
+ * outlives the process. All access is synchronized on the repository, which
+ * is cheap next to a database round-trip, and slides are copied in and out
+ * so callers never share a Document with the store.
+ *
+ * Every write is first turned into records, {op: "put", slide, at} or
+ * {op: "delete", id, at}, which are passed to persist and then applied.
+ * Subclasses that keep the records somewhere, such as FileSlideRepository,
+ * rebuild the same state, versions and change log by applying them again,
+ * starting from a snapshot if they saved one.
+ */
+public class InMemorySlideRepository implements SlideRepository {
+
+    // Slides keyed and ordered by position, plus the position of each slide by _id
+    private final TreeMap<Long, Document> slides = new TreeMap<>();
+    private final Map<ObjectId, Long> positions = new HashMap<>();
+    // Change log entries {op, slideId} keyed by the version the write produced
+    private final TreeMap<Long, Document> changes = new TreeMap<>();
+    private long version;
+    private long compactedThrough;
+    private Date updatedAt;
+
+    @Override
+    public void open() throws IOException {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public boolean isShared() {
+        return false;
+    }
+
+    @Override
+    public synchronized void forEachSlide(Consumer<Document> action) {
+        for (Document slide : slides.values()) {
+            action.accept(new Document(slide));
+        }
+    }
+
+    @Override
+    public synchronized Document getCollectionVersion() {
+        return new Document("_id", "slides").append("version", version)
+                .append("updatedAt", updatedAt).append("compactedThrough", compactedThrough);
+    }
+
+    @Override
+    public synchronized Document addSlide(String imagePath, String description) {
+        Date now = new Date();
+        Document slide = new Document("_id", new ObjectId())
+                .append("imagePath", imagePath)
+                .append("description", description)
+                .append("position", nextPosition())
+                .append("rev", 1L)
+                .append("updatedAt", now);
+        write(List.of(putRecord(slide, now)));
+        return new Document(slide);
+    }
+
+    @Override
+    public synchronized Document updateSlide(String id, String imagePath, String description, Long expectedRev) {
+        Document existing = lookup(new ObjectId(id));
+        if (existing == null) {
+            return null;
+        }
+        if (expectedRev != null && SlideRepository.revOf(existing) != expectedRev) {
+            throw new RevisionConflictException(new Document(existing));
+        }
+        Date now = new Date();
+        Document updated = updated(existing, imagePath, description, now);
+        write(List.of(putRecord(updated, now)));
+        return new Document(updated);
+    }
+
+    @Override
+    public synchronized boolean deleteSlide(String id) {
+        ObjectId slideId = new ObjectId(id);
+        if (!positions.containsKey(slideId)) {
+            return false;
+        }
+        write(List.of(deleteRecord(slideId, new Date())));
+        return true;
+    }
+
+    /**
+     * Applies the operations a batch at a time, so each batch is persisted in
+     * one write. Operations are checked against the slides as the earlier
+     * operations in the same batch leave them.
+     */
+    @Override
+    public synchronized List<Document> bulkWriteSlides(List<Document> operations, int batchSize, boolean ordered) {
+        List<Document> results = new ArrayList<>(operations.size());
+        List<Document> records = new ArrayList<>();
+        List<Document> batchResults = new ArrayList<>();
+        // Slides written by the current batch, with null for deletions
+        Map<ObjectId, Document> pending = new LinkedHashMap<>();
+        long nextPosition = nextPosition();
+        boolean stopped = false;
+
+        for (int i = 0; i < operations.size(); i++) {
+            Document result = new Document("index", i);
+            results.add(result);
+            if (stopped) {
+                result.append("ok", false).append("error", "Skipped after an earlier failure");
+                continue;
+            }
+            Document operation = operations.get(i);
+            String op = stringField(operation, "op") == null ? "add" : stringField(operation, "op");
+            String id = stringField(operation, "id");
+            String imagePath = stringField(operation, "imagePath");
+            String description = stringField(operation, "description");
+            boolean hasFields = imagePath != null && !imagePath.isEmpty() && description != null && !description.isEmpty();
+            result.append("op", op);
+            Date now = new Date();
+
+            String error = null;
+            if ("add".equals(op)) {
+                if (hasFields) {
+                    ObjectId newId = new ObjectId();
+                    long position = nextPosition++;
+                    result.append("id", newId.toHexString()).append("position", position);
+                    Document slide = new Document("_id", newId)
+                            .append("imagePath", imagePath)
+                            .append("description", description)
+                            .append("position", position)
+                            .append("rev", 1L)
+                            .append("updatedAt", now);
+                    pending.put(newId, slide);
+                    records.add(putRecord(slide, now));
+                    result.append("slide", slide);
+                } else {
+                    error = "imagePath and description are required";
+                }
+            } else if ("update".equals(op) || "delete".equals(op)) {
+                boolean update = "update".equals(op);
+                Document existing = null;
+                if (id == null || !ObjectId.isValid(id) || (update && !hasFields)) {
+                    error = update ? "A valid id, imagePath and description are required" : "A valid id is required";
+                } else {
+                    ObjectId slideId = new ObjectId(id);
+                    existing = pending.containsKey(slideId) ? pending.get(slideId) : lookup(slideId);
+                    if (existing == null) {
+                        error = "No slide with id " + id;
+                    } else if (update) {
+                        Document slide = updated(existing, imagePath, description, now);
+                        pending.put(slideId, slide);
+                        records.add(putRecord(slide, now));
+                        result.append("slide", slide);
+                    } else {
+                        pending.put(slideId, null);
+                        records.add(deleteRecord(slideId, now));
+                    }
+                }
+                result.append("id", id);
+            } else {
+                error = "Unknown op: " + op;
+            }
+
+            if (error != null) {
+                result.append("ok", false).append("error", error);
+                stopped = ordered;
+            } else {
+                batchResults.add(result);
+            }
+            if (records.size() == batchSize || stopped || i == operations.size() - 1) {
+                // In ordered mode a batch that could not be written stops the rest too
+                if (!writeBatch(records, batchResults) && ordered) {
+                    stopped = true;
+                }
+                pending.clear();
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Writes one batch of bulk records and marks its items as done. If the
+     * batch cannot be persisted none of it is applied and every item in it fails.
+     * @return true if the batch was written
+     */
+    private boolean writeBatch(List<Document> records, List<Document> batchResults) {
+        boolean written = true;
+        try {
+            write(records);
+            for (Document result : batchResults) {
+                result.append("ok", true);
+            }
+        } catch (UncheckedIOException e) {
+            written = false;
+            for (Document result : batchResults) {
+                result.remove("position");
+                result.remove("slide");
+                result.append("ok", false).append("error", e.getMessage());
+            }
+        }
+        records.clear();
+        batchResults.clear();
+        return written;
+    }
+
+    @Override
+    public synchronized Map<ObjectId, Document> getSlidesByIds(Collection<ObjectId> ids) {
+        Map<ObjectId, Document> found = new HashMap<>();
+        for (ObjectId id : ids) {
+            Document slide = lookup(id);
+            if (slide != null) {
+                found.put(id, new Document(slide));
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Reads the change log up to the last committed version. Versions are
+     * applied one at a time under the lock, so unlike a shared database there
+     * are never gaps, only a tail that may not be committed yet.
+     */
+    @Override
+    public synchronized Document getChangesSince(long since, int limit) {
+        long committed = committedVersion();
+        List<Document> entries = new ArrayList<>();
+        Document result = new Document("version", committed).append("resync", false).append("more", false)
+                .append("changes", entries);
+        if (since < compactedThrough || since > committed) {
+            return result.append("resync", true);
+        }
+        for (Map.Entry<Long, Document> entry : changes.subMap(since, false, committed, true).entrySet()) {
+            if (entries.size() == limit) {
+                return result.append("more", true).append("version", entries.get(limit - 1).getLong("version"));
+            }
+            entries.add(new Document("version", entry.getKey())
+                    .append("op", entry.getValue().getString("op"))
+                    .append("slideId", entry.getValue().getObjectId("slideId")));
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized long compactChanges(int retain) {
+        long removed = 0;
+        Set<ObjectId> seen = new HashSet<>();
+        Iterator<Document> newestFirst = changes.descendingMap().values().iterator();
+        while (newestFirst.hasNext()) {
+            if (!seen.add(newestFirst.next().getObjectId("slideId"))) {
+                newestFirst.remove();
+                removed++;
+            }
+        }
+        while (changes.size() > Math.max(0, retain)) {
+            compactedThrough = Math.max(compactedThrough, changes.pollFirstEntry().getKey());
+            removed++;
+        }
+        return removed;
+    }
+
+    @Override
+    public synchronized List<Document> getSlidesUpdatedSince(Date since) {
+        List<Document> updated = new ArrayList<>();
+        for (Document slide : slides.values()) {
+            Date slideUpdatedAt = slide.getDate("updatedAt");
+            if (slideUpdatedAt != null && !slideUpdatedAt.before(since)) {
+                updated.add(new Document(slide));
+            }
+        }
+        return updated;
+    }
+
+    @Override
+    public synchronized Set<ObjectId> getSlideIds() {
+        return new HashSet<>(positions.keySet());
+    }
+
+    @Override
+    public void watchChanges(Consumer<Document> stored, Consumer<ObjectId> removed, Runnable caughtUp) {
+        throw new UnsupportedOperationException("Slides in memory are only changed through this repository");
+    }
+
+    /**
+     * Saves records before they are applied. Nothing is saved in memory;
+     * subclasses that keep the slides override this. Called with the
+     * repository locked; each record takes the next version when applied.
+     * @param records the records of one write, in order
+     * @throws IOException if the records cannot be saved, in which case none are applied
+     */
+    protected void persist(List<Document> records) throws IOException {
+    }
+
+    /**
+     * Returns the last version that is safe to hand out in the change log,
+     * for subclasses that save writes after they are applied. Called with
+     * the repository locked.
+     * @return the current version, as every write in memory is committed
+     */
+    protected long committedVersion() {
+        return version;
+    }
+
+    /**
+     * Returns records that rebuild the current slides, versions and change
+     * log when applied in order: a checkpoint record that clears the
+     * repository and sets its versions, then one record per slide and per
+     * change log entry. None of them take a version.
+     * @return the records
+     */
+    protected synchronized List<Document> snapshot() {
+        List<Document> records = new ArrayList<>(1 + slides.size() + changes.size());
+        records.add(new Document("op", "checkpoint").append("version", version)
+                .append("compactedThrough", compactedThrough).append("at", updatedAt));
+        for (Document slide : slides.values()) {
+            records.add(new Document("op", "slide").append("slide", slide));
+        }
+        for (Map.Entry<Long, Document> entry : changes.entrySet()) {
+            records.add(new Document("op", "change").append("version", entry.getKey()).append("change", entry.getValue()));
+        }
+        return records;
+    }
+
+    /**
+     * Applies one record to the slides and the change log. Put and delete
+     * records take the next version; snapshot records restore state as it
+     * was. Used for new writes and by subclasses replaying saved records.
+     * @param record a put, delete or snapshot record
+     */
+    protected synchronized void apply(Document record) {
+        String op = record.getString("op");
+        if ("checkpoint".equals(op)) {
+            slides.clear();
+            positions.clear();
+            changes.clear();
+            version = record.getLong("version");
+            compactedThrough = record.getLong("compactedThrough");
+            updatedAt = record.getDate("at");
+            return;
+        }
+        if ("slide".equals(op)) {
+            Document slide = record.get("slide", Document.class);
+            Long position = SlideRepository.positionOf(slide);
+            positions.put(slide.getObjectId("_id"), position);
+            slides.put(position, slide);
+            return;
+        }
+        if ("change".equals(op)) {
+            changes.put(record.getLong("version"), record.get("change", Document.class));
+            return;
+        }
+
+        ObjectId id;
+        if ("delete".equals(op)) {
+            id = record.getObjectId("id");
+            Long position = positions.remove(id);
+            if (position == null) {
+                return;
+            }
+            slides.remove(position);
+            op = "delete";
+        } else {
+            Document slide = record.get("slide", Document.class);
+            id = slide.getObjectId("_id");
+            Long position = SlideRepository.positionOf(slide);
+            Long previous = positions.put(id, position);
+            if (previous != null && !previous.equals(position)) {
+                slides.remove(previous);
+            }
+            slides.put(position, slide);
+            op = previous == null ? "add" : "update";
+        }
+        version++;
+        changes.put(version, new Document("op", op).append("slideId", id));
+        updatedAt = record.getDate("at");
+    }
+
+    /**
+     * Persists a write's records, then applies them.
+     * @throws UncheckedIOException if the records cannot be saved
+     */
+    private void write(List<Document> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        try {
+            persist(records);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to save slide changes", e);
+        }
+        for (Document record : records) {
+            apply(record);
+        }
+    }
+
+    private static Document putRecord(Document slide, Date at) {
+        return new Document("op", "put").append("slide", slide).append("at", at);
+    }
+
+    private static Document deleteRecord(ObjectId id, Date at) {
+        return new Document("op", "delete").append("id", id).append("at", at);
+    }
+
+    private static Document updated(Document existing, String imagePath, String description, Date now) {
+        return new Document(existing)
+                .append("imagePath", imagePath)
+                .append("description", description)
+                .append("rev", SlideRepository.revOf(existing) + 1)
+                .append("updatedAt", now);
+    }
+
+    private Document lookup(ObjectId id) {
+        Long position = positions.get(id);
+        return position == null ? null : slides.get(position);
+    }
+
+    private long nextPosition() {
+        return slides.isEmpty() ? 0 : slides.lastKey() + 1;
+    }
+
+    /**
+     * Reads a field as a string, whatever type the client sent it as.
+     */
+    private static String stringField(Document operation, String key) {
+        Object value = operation.get(key);
+        return value == null ? null : value.toString();
+    }
+}
@@ -0,0 +1,287 @@
+//Daniel Escobedo
+//CS-499 SNHU
+//Artifact 3: Databases 
+
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.ReadPreference;
+import com.mongodb.WriteConcern;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.event.ConnectionCheckOutFailedEvent;
+import com.mongodb.event.ConnectionCheckOutStartedEvent;
+import com.mongodb.event.ConnectionCheckedInEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionClosedEvent;
+import com.mongodb.event.ConnectionCreatedEvent;
+import com.mongodb.event.ConnectionPoolListener;
+import org.bson.Document;
+
+import java.lang.management.ManagementFactory;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * This class owns the MongoClient used by MongoDBManager. It is started and
+ * stopped explicitly, by MongoLifecycleListener in the web app and by the
+ * Swing SlideShow's main method and shutdown hook, instead of being opened
+ * in a static initializer. Pool size, timeouts, read preference and write
+ * concern come from configuration, and pool metrics are published over JMX
+ * so the pool can be sized under load. Looking up a collection takes no
+ * lock; once stopped, the manager refuses lookups until it is started again
+ * rather than quietly opening a new client during shutdown.
+ *
+ * Configuration keys (system properties or web.xml context parameters,
+ * where a system property wins):
+ *   mongo.uri                  connection string (default mongodb://localhost:27017)
+ *   mongo.database             database name (default slideshow_db)
+ *   mongo.pool.maxSize         maximum pooled connections (default 50)
+ *   mongo.pool.minSize         connections kept open when idle (default 0)
+ *   mongo.pool.maxWaitMs       wait queue timeout for a free connection (default 2000)
+ *   mongo.connectTimeoutMs     socket connect timeout (default 5000)
+ *   mongo.socketTimeoutMs      socket read timeout, 0 for none (default 10000)
+ *   mongo.readPreference       e.g. primary, primaryPreferred, secondaryPreferred (default primary)
+ *   mongo.writeConcern         e.g. ACKNOWLEDGED, W1, MAJORITY (default ACKNOWLEDGED)
+ */
+public class MongoConnectionManager {
+    private static final String[] KEYS = {
+        "mongo.uri", "mongo.database", "mongo.pool.maxSize", "mongo.pool.minSize", "mongo.pool.maxWaitMs",
+        "mongo.connectTimeoutMs", "mongo.socketTimeoutMs", "mongo.readPreference", "mongo.writeConcern"
+    };
+    private static final String METRICS_NAME = "slideshow:type=MongoConnectionPool";
+
+    // The running client and its database, replaced together so readers never see one without the other
+    private static volatile Connection connection;
+    // Set by stop and cleared by start; guarded by the class lock
+    private static boolean stopped;
+    private static final PoolMetrics metrics = new PoolMetrics();
+
+    private MongoConnectionManager() {
+    }
+
+    private static final class Connection {
+        private final MongoClient client;
+        private final MongoDatabase database;
+
+        private Connection(MongoClient client, MongoDatabase database) {
+            this.client = client;
+            this.database = database;
+        }
+    }
+
+    /**
+     * Reads the configuration keys from system properties.
+     * @return the configuration, containing only the keys that are set
+     */
+    public static Properties configFromSystemProperties() {
+        Properties config = new Properties();
+        for (String key : KEYS) {
+            String value = System.getProperty(key);
+            if (value != null) {
+                config.setProperty(key, value);
+            }
+        }
+        return config;
+    }
+
+    /**
+     * Returns the names of the configuration keys, so callers can read them
+     * from other sources such as servlet context parameters.
+     * @return the configuration keys
+     */
+    public static String[] getConfigKeys() {
+        return KEYS.clone();
+    }
+
+    /**
+     * Creates the MongoClient. Calling this while already started has no effect.
+     * @param config the connection settings; missing keys use their defaults
+     */
+    public static synchronized void start(Properties config) {
+        stopped = false;
+        if (connection != null) {
+            return;
+        }
+        MongoClientSettings settings = MongoClientSettings.builder()
+                .applyConnectionString(new ConnectionString(config.getProperty("mongo.uri", "mongodb://localhost:27017")))
+                .applyToConnectionPoolSettings(pool -> pool
+                        .maxSize(intSetting(config, "mongo.pool.maxSize", 50))
+                        .minSize(intSetting(config, "mongo.pool.minSize", 0))
+                        .maxWaitTime(intSetting(config, "mongo.pool.maxWaitMs", 2000), TimeUnit.MILLISECONDS)
+                        .addConnectionPoolListener(metrics))
+                .applyToSocketSettings(socket -> socket
+                        .connectTimeout(intSetting(config, "mongo.connectTimeoutMs", 5000), TimeUnit.MILLISECONDS)
+                        .readTimeout(intSetting(config, "mongo.socketTimeoutMs", 10000), TimeUnit.MILLISECONDS))
+                .readPreference(ReadPreference.valueOf(config.getProperty("mongo.readPreference", "primary")))
+                .writeConcern(writeConcern(config.getProperty("mongo.writeConcern", "ACKNOWLEDGED")))
+                .build();
+
+        MongoClient client = MongoClients.create(settings);
+        connection = new Connection(client, client.getDatabase(config.getProperty("mongo.database", "slideshow_db")));
+        registerMetrics();
+    }
+
+    /**
+     * Closes the MongoClient and all pooled connections. Collections looked
+     * up afterwards fail until start is called again.
+     */
+    public static synchronized void stop() {
+        stopped = true;
+        Connection current = connection;
+        if (current != null) {
+            connection = null;
+            current.client.close();
+            unregisterMetrics();
+        }
+    }
+
+    /**
+     * Returns a collection from the configured database, starting the client
+     * from system properties if nothing has started it yet.
+     * @param name the collection name
+     * @return the collection
+     * @throws IllegalStateException if the client has been stopped
+     */
+    public static MongoCollection<Document> getCollection(String name) {
+        Connection current = connection;
+        if (current == null) {
+            current = startFromSystemProperties();
+        }
+        return current.database.getCollection(name);
+    }
+
+    private static synchronized Connection startFromSystemProperties() {
+        if (stopped) {
+            throw new IllegalStateException("The MongoDB connection has been stopped");
+        }
+        if (connection == null) {
+            start(configFromSystemProperties());
+        }
+        return connection;
+    }
+
+    /**
+     * Returns the live connection pool metrics.
+     * @return the pool metrics
+     */
+    public static PoolMetrics getPoolMetrics() {
+        return metrics;
+    }
+
+    private static int intSetting(Properties config, String key, int defaultValue) {
+        String value = config.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value for " + key + ": " + value, e);
+        }
+    }
+
+    private static WriteConcern writeConcern(String name) {
+        WriteConcern writeConcern = WriteConcern.valueOf(name);
+        if (writeConcern == null) {
+            throw new IllegalArgumentException("Unknown write concern: " + name);
+        }
+        return writeConcern;
+    }
+
+    private static void registerMetrics() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(METRICS_NAME);
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(metrics, objectName);
+            }
+        } catch (JMException e) {
+            System.err.println("Failed to register MongoDB pool metrics: " + e.getMessage());
+        }
+    }
+
+    private static void unregisterMetrics() {
+        try {
+            ObjectName objectName = new ObjectName(METRICS_NAME);
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            System.err.println("Failed to unregister MongoDB pool metrics: " + e.getMessage());
+        }
+    }
+
+    /**
+     * JMX view of the connection pool metrics.
+     */
+    public interface PoolMetricsMBean {
+        long getOpenConnections();
+        long getCheckedOutConnections();
+        long getWaitingRequests();
+        long getCheckOutFailures();
+        long getTotalCheckOuts();
+    }
+
+    /**
+     * Counts connection pool events to expose how busy the pool is.
+     */
+    public static class PoolMetrics implements ConnectionPoolListener, PoolMetricsMBean {
+        private final AtomicLong open = new AtomicLong();
+        private final AtomicLong checkedOut = new AtomicLong();
+        private final AtomicLong waiting = new AtomicLong();
+        private final AtomicLong checkOutFailures = new AtomicLong();
+        private final AtomicLong totalCheckOuts = new AtomicLong();
+
+        @Override
+        public void connectionCreated(ConnectionCreatedEvent event) {
+            open.incrementAndGet();
+        }
+
+        @Override
+        public void connectionClosed(ConnectionClosedEvent event) {
+            open.decrementAndGet();
+        }
+
+        @Override
+        public void connectionCheckOutStarted(ConnectionCheckOutStartedEvent event) {
+            waiting.incrementAndGet();
+        }
+
+        @Override
+        public void connectionCheckedOut(ConnectionCheckedOutEvent event) {
+            waiting.decrementAndGet();
+            checkedOut.incrementAndGet();
+            totalCheckOuts.incrementAndGet();
+        }
+
+        @Override
+        public void connectionCheckOutFailed(ConnectionCheckOutFailedEvent event) {
+            waiting.decrementAndGet();
+            checkOutFailures.incrementAndGet();
+        }
+
+        @Override
+        public void connectionCheckedIn(ConnectionCheckedInEvent event) {
+            checkedOut.decrementAndGet();
+        }
+
+        @Override public long getOpenConnections() { return open.get(); }
+        @Override public long getCheckedOutConnections() { return checkedOut.get(); }
+        @Override public long getWaitingRequests() { return waiting.get(); }
+        @Override public long getCheckOutFailures() { return checkOutFailures.get(); }
+        @Override public long getTotalCheckOuts() { return totalCheckOuts.get(); }
+
+        @Override
+        public String toString() {
+            return "PoolMetrics[open=" + open + ", checkedOut=" + checkedOut + ", waiting=" + waiting
+                    + ", checkOutFailures=" + checkOutFailures + ", totalCheckOuts=" + totalCheckOuts + "]";
+        }
+    }
+}
@@ -2,82 +2,929 @@
 //CS-499 SNHU
 //Artifact 3: Databases 
 
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoException;
+import com.mongodb.MongoWriteException;
+import com.mongodb.bulk.BulkWriteError;
 import com.mongodb.client.*;
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
 import org.bson.Document;
+import org.bson.conversions.Bson;
 import org.bson.types.ObjectId;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This class manages all MongoDB operations for the SlideShow application.
- * It provides methods for CRUD operations on slides.
+ * It provides methods for CRUD operations on slides. The connection is
+ * managed by MongoConnectionManager.
  */
 public class MongoDBManager {
-    // Constants for MongoDB connection and database details
-    private static final String CONNECTION_STRING = "mongodb://localhost:27017";
-    private static final String DATABASE_NAME = "slideshow_db";
     private static final String COLLECTION_NAME = "slides";
+    private static final String META_COLLECTION_NAME = "slide_meta";
+    private static final String CHANGES_COLLECTION_NAME = "slide_changes";
+    // How long a change log entry may take to be saved after its version is taken
+    private static final long CHANGE_GRACE_MS = Long.getLong("slideshow.changes.graceMs", 5000L);
+    private static final String POSITION_INDEX = "position_unique";
+    // The slide_meta document holding the next free position
+    private static final String POSITIONS_ID = "slide_positions";
+    private static final int MAX_POSITION_RETRIES = 5;
+    // Attempts at taking versions for, and saving, a write's change log entries
+    private static final int MAX_RECORD_ATTEMPTS = 3;
 
-    // MongoDB client and database objects
-    private static MongoClient mongoClient;
-    private static MongoDatabase database;
-    private static MongoCollection<Document> collection;
+    /**
+     * Returns the slides collection. The connection itself is owned by
+     * MongoConnectionManager, so a failed connect surfaces on first use
+     * instead of breaking class loading.
+     */
+    private static MongoCollection<Document> collection() {
+        return MongoConnectionManager.getCollection(COLLECTION_NAME);
+    }
+
+    /**
+     * Returns the collection holding bookkeeping documents such as the
+     * slides collection version.
+     */
+    private static MongoCollection<Document> metaCollection() {
+        return MongoConnectionManager.getCollection(META_COLLECTION_NAME);
+    }
+
+    /**
+     * Reads the slides collection version. The version goes up by one on
+     * every write made through this class, so clients can tell whether the
+     * collection changed without reading it.
+     * @return a Document with the version and the updatedAt of the last write;
+     *         version 0 and a null updatedAt if nothing has been written yet
+     */
+    public static Document getCollectionVersion() {
+        Document meta = metaCollection().find(Filters.eq("_id", COLLECTION_NAME)).first();
+        return meta != null ? meta : new Document("_id", COLLECTION_NAME).append("version", 0L);
+    }
+
+    /**
+     * Returns the change log: one entry per slide written, keyed by the
+     * collection version the write produced.
+     */
+    private static MongoCollection<Document> changesCollection() {
+        return MongoConnectionManager.getCollection(CHANGES_COLLECTION_NAME);
+    }
 
-    // Static initializer to set up MongoDB connection
-    static {
+    /**
+     * Takes the next versions of the slides collection, one per write.
+     * @param count the number of writes
+     * @return the new version document, whose version is the last one taken
+     */
+    private static Document bumpVersion(int count) {
+        return metaCollection().findOneAndUpdate(
+                Filters.eq("_id", COLLECTION_NAME),
+                Updates.combine(Updates.inc("version", (long) count), Updates.currentDate("updatedAt")),
+                new FindOneAndUpdateOptions().upsert(true).returnDocument(ReturnDocument.AFTER));
+    }
+
+    /**
+     * Records a write to one slide. See recordChanges.
+     */
+    private static void recordChange(String op, ObjectId slideId) {
+        List<Document> changes = new ArrayList<>(1);
+        changes.add(new Document("op", op).append("slideId", slideId));
+        recordChanges(changes);
+    }
+
+    /**
+     * Records writes to the slides collection: takes one version per write
+     * and adds a change log entry for each, in order. It runs once the
+     * writes are done, so a version is never taken for a write that has not
+     * landed; SlideMirror relies on that to label what it has loaded.
+     * Taking the versions and saving the entries are each retried. If the
+     * entries still cannot be saved, compactedThrough is raised past them so
+     * readers from before them resync; if even that fails, readers resync
+     * once the missing versions are older than CHANGE_GRACE_MS.
+     * @param changes Documents with the op ("add", "update" or "delete") and slideId of each write
+     */
+    private static void recordChanges(List<Document> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        Document meta = null;
+        for (int attempt = 1; meta == null; attempt++) {
+            try {
+                meta = bumpVersion(changes.size());
+            } catch (MongoException e) {
+                if (attempt == MAX_RECORD_ATTEMPTS || !pause(attempt)) {
+                    System.err.println("Failed to take versions for " + changes.size() + " slide changes, viewers will not see them: " + e.getMessage());
+                    return;
+                }
+            }
+        }
+        long last = longField(meta, "version");
+        long version = last - changes.size();
+        Date now = new Date();
+        List<Document> entries = new ArrayList<>(changes.size());
+        for (Document change : changes) {
+            entries.add(new Document("_id", ++version)
+                    .append("op", change.getString("op"))
+                    .append("slideId", change.getObjectId("slideId"))
+                    .append("at", now));
+        }
+        String failure = null;
+        for (int attempt = 1; attempt <= MAX_RECORD_ATTEMPTS; attempt++) {
+            try {
+                changesCollection().insertMany(entries, new InsertManyOptions().ordered(false));
+                return;
+            } catch (MongoBulkWriteException e) {
+                // Entries saved by an earlier attempt fail as duplicates; the rest were saved this time
+                if (e.getWriteConcernError() == null && onlyDuplicates(e.getWriteErrors())) {
+                    return;
+                }
+                failure = e.getMessage();
+            } catch (MongoException e) {
+                failure = e.getMessage();
+            }
+            if (attempt < MAX_RECORD_ATTEMPTS && !pause(attempt)) {
+                break;
+            }
+        }
         try {
-            mongoClient = MongoClients.create(CONNECTION_STRING);
-            database = mongoClient.getDatabase(DATABASE_NAME);
-            collection = database.getCollection(COLLECTION_NAME);
-        } catch (Exception e) {
-            // Log the exception or rethrow as a runtime exception
-            System.err.println("Failed to initialize MongoDB connection: " + e.getMessage());
-            throw new RuntimeException("Database initialization failed", e);
+            metaCollection().updateOne(Filters.eq("_id", COLLECTION_NAME), Updates.max("compactedThrough", last),
+                    new UpdateOptions().upsert(true));
+            System.err.println("Failed to record " + entries.size() + " slide changes, viewers before version "
+                    + last + " will resync: " + failure);
+        } catch (MongoException e) {
+            System.err.println("Failed to record " + entries.size() + " slide changes, viewers will resync after "
+                    + CHANGE_GRACE_MS + " ms: " + failure);
         }
     }
 
+    private static boolean onlyDuplicates(List<BulkWriteError> errors) {
+        for (BulkWriteError error : errors) {
+            if (ErrorCategory.fromErrorCode(error.getCode()) != ErrorCategory.DUPLICATE_KEY) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
-     * Adds a new slide to the database.
+     * Waits a little longer after each failed attempt.
+     * @return false if the thread was interrupted and should stop retrying
+     */
+    private static boolean pause(int attempt) {
+        try {
+            Thread.sleep(100L * attempt);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Reads the change log after a version, for clients that keep their own
+     * copy of the slides. Entries are returned oldest first. A version is
+     * taken before its entry is saved, so a missing version may still be
+     * in flight; reading stops there until it appears. Once it is older than
+     * CHANGE_GRACE_MS it was lost and the client is told to resync, so a
+     * client never moves past a change it has not seen. Entries emptied by
+     * compaction are passed over without being returned.
+     * @param since the last version the client has applied, or 0 for none
+     * @param limit the maximum number of entries to return
+     * @return a Document with the version the client has reached after
+     *         applying the entries, resync true if the entries it needs were
+     *         compacted away or lost (or the version is from a different database)
+     *         and it must reload every slide, more true if entries were
+     *         left out by the limit, and the changes with version, op and slideId
+     */
+    public static Document getChangesSince(long since, int limit) {
+        Document meta = getCollectionVersion();
+        long current = longField(meta, "version");
+        List<Document> changes = new ArrayList<>();
+        Document result = new Document("version", current).append("resync", false).append("more", false)
+                .append("changes", changes);
+        if (since < longField(meta, "compactedThrough") || since > current) {
+            return result.append("resync", true);
+        }
+
+        long settled = System.currentTimeMillis() - CHANGE_GRACE_MS;
+        long reached = since;
+        int read = 0;
+        try (MongoCursor<Document> cursor = changesCollection()
+                .find(Filters.and(Filters.gt("_id", since), Filters.lte("_id", current)))
+                .sort(Sorts.ascending("_id")).limit(limit + 1).cursor()) {
+            while (cursor.hasNext()) {
+                Document entry = cursor.next();
+                read++;
+                long version = longField(entry, "_id");
+                if (version != reached + 1) {
+                    // The missing versions were taken before this entry was saved
+                    if (entry.getDate("at").getTime() > settled) {
+                        return result.append("version", reached); // Still being saved
+                    }
+                    return result.append("resync", true);
+                }
+                if (changes.size() == limit) {
+                    return result.append("more", true).append("version", reached);
+                }
+                if (!entry.getBoolean("superseded", false)) {
+                    changes.add(new Document("version", version)
+                            .append("op", entry.getString("op"))
+                            .append("slideId", entry.getObjectId("slideId")));
+                }
+                reached = version;
+            }
+        }
+        if (read == limit + 1) {
+            // The page was used up by emptied entries
+            return result.append("more", true).append("version", reached);
+        }
+        // Versions after the last entry are either still being saved or were lost
+        Date lastWrite = meta.getDate("updatedAt");
+        if (reached < current && lastWrite != null && lastWrite.getTime() <= settled) {
+            return result.append("resync", true);
+        }
+        return result.append("version", reached);
+    }
+
+    /**
+     * Compacts the change log. Entries superseded by a newer entry for the
+     * same slide are emptied, since a client applying the newer one gets the
+     * same result; they are kept as markers because a missing version means
+     * a lost entry. Then the oldest entries beyond the retained count are
+     * removed. The compacted-through version is raised before anything is
+     * removed, so a client that needed a removed entry is told to resync
+     * rather than silently skipping it.
+     * @param retain the number of newest entries to keep
+     * @return the number of entries emptied or removed
+     */
+    public static long compactChanges(int retain) {
+        Date settled = new Date(System.currentTimeMillis() - CHANGE_GRACE_MS);
+        List<Object> latest = new ArrayList<>();
+        changesCollection().aggregate(List.of(
+                        Aggregates.match(Filters.exists("slideId")),
+                        Aggregates.group("$slideId", Accumulators.max("latest", "$_id"))))
+                .forEach(group -> latest.add(group.get("latest")));
+        long removed = changesCollection()
+                .updateMany(Filters.and(Filters.nin("_id", latest), Filters.lt("at", settled), Filters.exists("slideId")),
+                        Updates.combine(Updates.unset("op"), Updates.unset("slideId"), Updates.set("superseded", true)))
+                .getModifiedCount();
+
+        Document newestDropped = changesCollection().find().sort(Sorts.descending("_id"))
+                .projection(Projections.include("_id")).skip(Math.max(0, retain)).first();
+        if (newestDropped != null) {
+            long through = longField(newestDropped, "_id");
+            metaCollection().updateOne(Filters.eq("_id", COLLECTION_NAME), Updates.max("compactedThrough", through),
+                    new UpdateOptions().upsert(true));
+            removed += changesCollection().deleteMany(Filters.lte("_id", through)).getDeletedCount();
+        }
+        return removed;
+    }
+
+    /**
+     * Reads a numeric field as a long, whichever integer type it was saved as.
+     */
+    private static long longField(Document document, String key) {
+        Object value = document.get(key);
+        return value instanceof Number ? ((Number) value).longValue() : 0L;
+    }
+
+    /**
+     * Creates the indexes the slide queries rely on. Slides saved before
+     * positions existed are numbered first, in _id order, so the unique
+     * index can be built. Safe to call on every startup; an index that
+     * already exists is left as it is.
+     * @throws IllegalStateException if positional queries are not planned as a scan of the position index
+     */
+    public static void ensureIndexes() {
+        backfillPositions();
+        collection().createIndex(Indexes.ascending("position"), new IndexOptions().unique(true).name(POSITION_INDEX));
+        checkPositionPlans();
+        startChangeLog();
+    }
+
+    /**
+     * Explains the positional lookup and the keyset page query, and fails
+     * unless both scan the position index. A page that has to sort in
+     * memory or scan the collection gets slower with every slide added, so
+     * the application refuses to start on one rather than degrade quietly.
+     * @throws IllegalStateException if either query does not use the position index
+     */
+    public static void checkPositionPlans() {
+        checkPlan("lookup", collection().find(Filters.eq("position", 0L)).explain());
+        checkPlan("page", collection().find(Filters.gt("position", 0L))
+                .sort(Sorts.ascending("position")).limit(100).explain());
+    }
+
+    private static void checkPlan(String query, Document explain) {
+        List<String> stages = new ArrayList<>();
+        List<String> indexes = new ArrayList<>();
+        Document queryPlanner = explain.get("queryPlanner", Document.class);
+        if (queryPlanner != null) {
+            collectStages(queryPlanner.get("winningPlan"), stages);
+            collectIndexNames(queryPlanner.get("winningPlan"), indexes);
+        }
+        if (!stages.contains("IXSCAN") || stages.contains("COLLSCAN") || stages.contains("SORT")
+                || !indexes.contains(POSITION_INDEX)) {
+            throw new IllegalStateException("Slide position " + query + " is not using the " + POSITION_INDEX
+                    + " index, plan stages: " + stages + ", indexes: " + indexes);
+        }
+    }
+
+    /**
+     * Marks the versions written before the change log existed as compacted,
+     * so clients that sync from before them reload every slide instead of
+     * missing slides the log never recorded. Only the first call does anything.
+     */
+    private static void startChangeLog() {
+        long current = longField(getCollectionVersion(), "version");
+        metaCollection().updateOne(
+                Filters.and(Filters.eq("_id", COLLECTION_NAME), Filters.exists("compactedThrough", false)),
+                Updates.set("compactedThrough", current));
+    }
+
+    /**
+     * Walks an explain plan tree collecting stage names. Plans nest their
+     * children under inputStage, inputStages or (on newer servers) queryPlan.
+     */
+    private static void collectStages(Object plan, List<String> stages) {
+        if (plan instanceof Document) {
+            Document stage = (Document) plan;
+            if (stage.get("stage") instanceof String) {
+                stages.add(stage.getString("stage"));
+            }
+            for (Object child : stage.values()) {
+                collectStages(child, stages);
+            }
+        } else if (plan instanceof List) {
+            for (Object child : (List<?>) plan) {
+                collectStages(child, stages);
+            }
+        }
+    }
+
+    /**
+     * Walks an explain plan tree collecting the names of the indexes it scans.
+     */
+    private static void collectIndexNames(Object plan, List<String> indexes) {
+        if (plan instanceof Document) {
+            Document stage = (Document) plan;
+            if (stage.get("indexName") instanceof String) {
+                indexes.add(stage.getString("indexName"));
+            }
+            for (Object child : stage.values()) {
+                collectIndexNames(child, indexes);
+            }
+        } else if (plan instanceof List) {
+            for (Object child : (List<?>) plan) {
+                collectIndexNames(child, indexes);
+            }
+        }
+    }
+
+    /**
+     * Gives every slide without a position the next free position, in _id order.
+     */
+    private static void backfillPositions() {
+        long next = nextPosition();
+        List<WriteModel<Document>> updates = new ArrayList<>();
+        try (MongoCursor<Document> cursor = collection().find(Filters.exists("position", false))
+                .sort(Sorts.ascending("_id")).projection(Projections.include("_id")).cursor()) {
+            while (cursor.hasNext()) {
+                updates.add(new UpdateOneModel<>(Filters.eq("_id", cursor.next().get("_id")), Updates.set("position", next++)));
+                if (updates.size() == 1000) {
+                    collection().bulkWrite(updates);
+                    updates.clear();
+                }
+            }
+        }
+        if (!updates.isEmpty()) {
+            collection().bulkWrite(updates);
+        }
+    }
+
+    /**
+     * Returns the position after the last slide, using the position index.
+     */
+    private static long nextPosition() {
+        Document last = collection().find(Filters.exists("position"))
+                .sort(Sorts.descending("position"))
+                .projection(Projections.include("position"))
+                .first();
+        return last == null ? 0 : SlideRepository.positionOf(last) + 1;
+    }
+
+    /**
+     * Reserves a run of positions at the end of the slide order. The next
+     * free position is kept in a counter document and taken in one atomic
+     * update, so concurrent adds and imports never get the same position.
+     * The counter is first raised to the end of the position index, in case
+     * slides were given positions some other way.
+     * @param count the number of positions to reserve
+     * @return the first reserved position
+     */
+    private static long reservePositions(int count) {
+        long end = nextPosition();
+        Document next = new Document("$max", Arrays.asList(new Document("$ifNull", Arrays.asList("$next", 0L)), end));
+        Document counter = metaCollection().findOneAndUpdate(
+                Filters.eq("_id", POSITIONS_ID),
+                Collections.singletonList(new Document("$set",
+                        new Document("next", new Document("$add", Arrays.asList(next, (long) count))))),
+                new FindOneAndUpdateOptions().upsert(true).returnDocument(ReturnDocument.AFTER));
+        return longField(counter, "next") - count;
+    }
+
+    /**
+     * Adds a new slide to the database at the end of the slide order, at a
+     * position taken from reservePositions. If a slide positioned some other
+     * way already holds it, the unique index rejects the insert and it is
+     * retried with the next free position.
      * @param imagePath the path to the slide image
      * @param description the description of the slide
+     * @return the inserted slide, including its generated _id and position
      */
-    public static void addSlide(String imagePath, String description) {
-        Document slide = new Document("imagePath", imagePath)
-                .append("description", description);
-        collection.insertOne(slide);
+    public static Document addSlide(String imagePath, String description) {
+        for (int attempt = 1; ; attempt++) {
+            Document slide = new Document("imagePath", imagePath)
+                    .append("description", description)
+                    .append("position", reservePositions(1))
+                    .append("rev", 1L)
+                    .append("updatedAt", new Date());
+            try {
+                collection().insertOne(slide);
+                recordChange("add", slide.getObjectId("_id"));
+                return slide;
+            } catch (MongoWriteException e) {
+                if (e.getError().getCategory() != ErrorCategory.DUPLICATE_KEY || attempt == MAX_POSITION_RETRIES) {
+                    throw e;
+                }
+            }
+        }
     }
 
     /**
-     * Retrieves all slides from the database.
+     * Retrieves all slides from the database in position order.
+     * This materializes the whole collection; prefer getSlidesPage or
+     * openSlideCursor for anything that can grow large.
      * @return a List of Document objects representing slides
      */
     public static List<Document> getAllSlides() {
         List<Document> slides = new ArrayList<>();
-        collection.find().into(slides);
+        collection().find().sort(Sorts.ascending("position")).into(slides);
         return slides;
     }
 
     /**
-     * Updates an existing slide in the database.
+     * Retrieves the slide at an exact position.
+     * @param position the slide's position
+     * @return the slide, or null if no slide has that position
+     */
+    public static Document getSlideAtPosition(long position) {
+        return collection().find(Filters.eq("position", position)).first();
+    }
+
+    /**
+     * Retrieves the n-th slide in position order, for jump-to-slide. Positions
+     * can have gaps after deletes, so this walks the position index rather
+     * than matching a position directly, and the server skips n index entries
+     * to get there. It is only meant for small n, off the hot paths; use
+     * getSlideAtPosition or getSlidesInRange when the position is known.
+     * @param n the 0-based index of the slide
+     * @return the slide, or null if there are not that many slides
+     */
+    public static Document getNthSlide(int n) {
+        return collection().find().sort(Sorts.ascending("position")).skip(n).limit(1).first();
+    }
+
+    /**
+     * Retrieves the slides whose positions fall in a range, in position order.
+     * @param fromPosition the first position to include
+     * @param toPosition the position to stop before
+     * @return the slides in the range
+     */
+    public static List<Document> getSlidesInRange(long fromPosition, long toPosition) {
+        List<Document> slides = new ArrayList<>();
+        collection().find(Filters.and(Filters.gte("position", fromPosition), Filters.lt("position", toPosition)))
+                .sort(Sorts.ascending("position"))
+                .into(slides);
+        return slides;
+    }
+
+    /**
+     * Retrieves one page of slides ordered by _id, resuming after the last
+     * slide the caller has already seen.
+     * @param pageSize the maximum number of slides to return
+     * @param afterId the _id of the last slide already seen, or null for the first page
+     * @return up to pageSize slides following afterId
+     */
+    public static List<Document> getSlidesPage(int pageSize, String afterId) {
+        Document after = afterId == null ? null : new Document("_id", new ObjectId(afterId));
+        return getSlidesPage(pageSize, "_id", after);
+    }
+
+    /**
+     * Retrieves one page of slides ordered by a sort key. Pages are keyset
+     * based: the next page starts after the last slide of the previous one,
+     * with ties on the sort key broken by _id, so no slide is skipped or
+     * repeated and no earlier slides have to be scanned and discarded.
+     * @param pageSize the maximum number of slides to return
+     * @param sortKey the field to order slides by
+     * @param after the last slide of the previous page, or null for the first page
+     * @return up to pageSize slides following after
+     */
+    public static List<Document> getSlidesPage(int pageSize, String sortKey, Document after) {
+        Bson filter = after == null ? new Document() : keysetAfter(sortKey, after);
+        List<Document> page = new ArrayList<>(pageSize);
+        collection().find(filter).sort(orderBy(sortKey)).limit(pageSize).into(page);
+        return page;
+    }
+
+    /**
+     * Opens a cursor over slides in position order. Documents are fetched from
+     * the server in batches as the cursor advances, so the collection is never
+     * held in memory at once. The caller must close the cursor.
+     * @param afterPosition the position of the last slide already seen, or null to start at the beginning
+     * @param fields the fields to return (_id is always included), or null for all fields
+     * @param limit the maximum number of slides to return, or 0 for no limit
+     * @param batchSize the number of documents fetched per round-trip
+     * @return an open cursor over the slides
+     */
+    public static MongoCursor<Document> openSlideCursor(Long afterPosition, List<String> fields, int limit, int batchSize) {
+        Bson filter = afterPosition == null ? new Document() : Filters.gt("position", afterPosition);
+        FindIterable<Document> find = collection().find(filter).sort(Sorts.ascending("position")).limit(limit).batchSize(batchSize);
+        if (fields != null && !fields.isEmpty()) {
+            find = find.projection(Projections.include(fields));
+        }
+        return find.cursor();
+    }
+
+    /**
+     * Retrieves the slides added or updated at or after the given time.
+     * Used by SlideMirror to poll for remote changes.
+     * @param since the time of the previous poll
+     * @return the slides changed since then
+     */
+    public static List<Document> getSlidesUpdatedSince(Date since) {
+        List<Document> slides = new ArrayList<>();
+        collection().find(Filters.gte("updatedAt", since)).into(slides);
+        return slides;
+    }
+
+    /**
+     * Retrieves the _id of every slide, without any other fields.
+     * Used by SlideMirror to detect slides deleted by other clients.
+     * @return the set of slide ids
+     */
+    public static Set<ObjectId> getSlideIds() {
+        Set<ObjectId> ids = new HashSet<>();
+        try (MongoCursor<Document> cursor = collection().find().projection(Projections.include("_id")).cursor()) {
+            while (cursor.hasNext()) {
+                ids.add(cursor.next().getObjectId("_id"));
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Retrieves the slides with the given ids in one query.
+     * Used by SlideChangesServlet to fill in the slides a change log names.
+     * @param ids the slide ids
+     * @return the slides that still exist, by id
+     */
+    public static Map<ObjectId, Document> getSlidesByIds(Collection<ObjectId> ids) {
+        Map<ObjectId, Document> slides = new HashMap<>();
+        if (ids.isEmpty()) {
+            return slides;
+        }
+        for (Document slide : collection().find(Filters.in("_id", ids))) {
+            slides.put(slide.getObjectId("_id"), slide);
+        }
+        return slides;
+    }
+
+    /**
+     * Opens a change stream on the slides collection. Change streams need a
+     * replica set or sharded cluster; on a standalone server iterating the
+     * stream fails and callers should fall back to polling.
+     * @return the change stream, returning full documents for updates
+     */
+    public static ChangeStreamIterable<Document> watchSlides() {
+        return collection().watch().fullDocument(FullDocument.UPDATE_LOOKUP);
+    }
+
+    /**
+     * Builds the sort order for a sort key, with _id as the tie-breaker.
+     */
+    private static Bson orderBy(String sortKey) {
+        if ("_id".equals(sortKey)) {
+            return Sorts.ascending("_id");
+        }
+        return Sorts.ascending(sortKey, "_id");
+    }
+
+    /**
+     * Builds the filter that matches every slide ordered after the given one.
+     */
+    private static Bson keysetAfter(String sortKey, Document after) {
+        Object lastId = after.get("_id");
+        if ("_id".equals(sortKey)) {
+            return Filters.gt("_id", lastId);
+        }
+        Object lastValue = after.get(sortKey);
+        return Filters.or(
+                Filters.gt(sortKey, lastValue),
+                Filters.and(Filters.eq(sortKey, lastValue), Filters.gt("_id", lastId)));
+    }
+
+    /**
+     * Updates an existing slide in the database. Every update increments the
+     * slide's rev field, and when the caller passes the revision it read the
+     * update only applies if the slide is still at that revision, so an edit
+     * made from a stale copy is rejected instead of overwriting a newer one.
      * @param id the ObjectId of the slide to update
      * @param imagePath the new image path
      * @param description the new description
+     * @param expectedRev the revision the caller read, or null to update whatever is stored
+     * @return the updated slide, or null if there is no such slide
+     * @throws SlideRepository.RevisionConflictException if the slide is at a different revision
      */
-    public static void updateSlide(String id, String imagePath, String description) {
-        Document filter = new Document("_id", new ObjectId(id));
+    public static Document updateSlide(String id, String imagePath, String description, Long expectedRev) {
+        ObjectId slideId = new ObjectId(id);
+        Bson filter = expectedRev == null ? Filters.eq("_id", slideId)
+                : Filters.and(Filters.eq("_id", slideId), revIs(expectedRev));
         Document update = new Document("$set", new Document("imagePath", imagePath)
-                .append("description", description));
-        collection.updateOne(filter, update);
+                .append("description", description)
+                .append("updatedAt", new Date()))
+                .append("$inc", new Document("rev", 1L));
+        Document updated = collection().findOneAndUpdate(filter, update,
+                new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER));
+        if (updated != null) {
+            recordChange("update", slideId);
+            return updated;
+        }
+        if (expectedRev != null) {
+            Document current = collection().find(Filters.eq("_id", slideId)).first();
+            if (current != null) {
+                throw new SlideRepository.RevisionConflictException(current);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Builds the filter that matches slides at a revision. Revision 0 also
+     * matches slides saved before revisions existed, which have no rev field.
+     */
+    private static Bson revIs(long rev) {
+        if (rev == 0) {
+            return Filters.or(Filters.eq("rev", 0L), Filters.exists("rev", false));
+        }
+        return Filters.eq("rev", rev);
     }
 
     /**
      * Deletes a slide from the database.
      * @param id the ObjectId of the slide to delete
+     * @return true if the slide existed
      */
-    public static void deleteSlide(String id) {
+    public static boolean deleteSlide(String id) {
         Document filter = new Document("_id", new ObjectId(id));
-        collection.deleteOne(filter);
+        if (collection().deleteOne(filter).getDeletedCount() > 0) {
+            recordChange("delete", filter.getObjectId("_id"));
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Applies a list of slide operations in batches, one bulkWrite round-trip
+     * per batch. Each operation is a Document whose "op" is add, update or
+     * delete (add when missing), along with the id, imagePath and description
+     * that operation needs. A failing item is reported in its own result and
+     * does not abort the rest; in ordered mode the items after the first
+     * failure are reported as skipped instead. A batch that fails as a whole,
+     * such as on a timeout or a lost connection, reports each of its items
+     * failed. Each batch's writes are recorded in the change log as soon as
+     * it completes, so those that landed are recorded whatever happens later.
+     * Positions for every add are reserved up front with reservePositions,
+     * so added slides never collide with concurrent adds or imports.
+     * @param operations the operations to apply, in order
+     * @param batchSize the maximum number of operations sent per round-trip
+     * @param ordered whether to stop at the first failure
+     * @return one result per operation, in input order, with index, op, ok and id or error fields;
+     *         added slides also report their position, and a successful add or update reports
+     *         the slide as stored in "slide", or no slide if it has since been deleted
+     */
+    public static List<Document> bulkWriteSlides(List<Document> operations, int batchSize, boolean ordered) {
+        List<Document> results = new ArrayList<>(operations.size());
+        int adds = 0;
+        for (Document operation : operations) {
+            String op = stringField(operation, "op");
+            if (op == null || op.equals("add")) {
+                adds++;
+            }
+        }
+        // Positions left unused by a failed add are just a gap in the order
+        AtomicLong nextPosition = new AtomicLong(adds == 0 ? 0 : reservePositions(adds));
+        List<WriteModel<Document>> batch = new ArrayList<>(batchSize);
+        List<Document> batchResults = new ArrayList<>(batchSize);
+        boolean stopped = false;
+
+        for (int i = 0; i < operations.size(); i++) {
+            Document result = new Document("index", i);
+            results.add(result);
+            if (stopped) {
+                result.append("ok", false).append("error", "Skipped after an earlier failure");
+                continue;
+            }
+
+            WriteModel<Document> model;
+            try {
+                model = toWriteModel(operations.get(i), result, nextPosition);
+            } catch (IllegalArgumentException e) {
+                if (ordered) {
+                    // Earlier items still run, nothing after this one does
+                    executeBatch(batch, batchResults, true);
+                    stopped = true;
+                }
+                result.append("ok", false).append("error", e.getMessage());
+                continue;
+            }
+            batch.add(model);
+            batchResults.add(result);
+
+            if (batch.size() == batchSize) {
+                stopped = !executeBatch(batch, batchResults, ordered) && ordered;
+            }
+        }
+        if (!stopped) {
+            executeBatch(batch, batchResults, ordered);
+        }
+        attachStoredSlides(results, batchSize);
+        return results;
+    }
+
+    /**
+     * Reads back the slides written by successful adds and updates, a batch
+     * of ids per query, and reports each in its result's "slide" field. An
+     * update of a missing slide succeeds without matching anything, so it is
+     * left without a slide, as is a slide deleted since it was written.
+     */
+    private static void attachStoredSlides(List<Document> results, int batchSize) {
+        List<Document> written = new ArrayList<>();
+        for (Document result : results) {
+            if (result.getBoolean("ok", false) && !"delete".equals(result.getString("op"))) {
+                written.add(result);
+            }
+        }
+        for (int start = 0; start < written.size(); start += batchSize) {
+            List<Document> chunk = written.subList(start, Math.min(written.size(), start + batchSize));
+            Set<ObjectId> ids = new HashSet<>();
+            for (Document result : chunk) {
+                ids.add(new ObjectId(result.getString("id")));
+            }
+            Map<ObjectId, Document> stored = getSlidesByIds(ids);
+            for (Document result : chunk) {
+                Document slide = stored.get(new ObjectId(result.getString("id")));
+                if (slide != null) {
+                    result.append("slide", slide);
+                }
+            }
+        }
+    }
+
+    /**
+     * Converts a bulk operation into a write model, recording its op and id in
+     * the result. Added slides take the next of the positions reserved for them.
+     * @throws IllegalArgumentException if the operation is missing a field or is not recognised
+     */
+    private static WriteModel<Document> toWriteModel(Document operation, Document result, AtomicLong nextPosition) {
+        String op = stringField(operation, "op") == null ? "add" : stringField(operation, "op");
+        String id = stringField(operation, "id");
+        String imagePath = stringField(operation, "imagePath");
+        String description = stringField(operation, "description");
+        result.append("op", op);
+
+        boolean hasFields = imagePath != null && !imagePath.isEmpty() && description != null && !description.isEmpty();
+        switch (op) {
+            case "add":
+                if (!hasFields) {
+                    throw new IllegalArgumentException("imagePath and description are required");
+                }
+                ObjectId newId = new ObjectId();
+                long position = nextPosition.getAndIncrement();
+                result.append("id", newId.toHexString()).append("position", position);
+                return new InsertOneModel<>(new Document("_id", newId)
+                        .append("imagePath", imagePath)
+                        .append("description", description)
+                        .append("position", position)
+                        .append("rev", 1L)
+                        .append("updatedAt", new Date()));
+            case "update":
+                if (id == null || !ObjectId.isValid(id) || !hasFields) {
+                    throw new IllegalArgumentException("A valid id, imagePath and description are required");
+                }
+                result.append("id", id);
+                return new UpdateOneModel<>(new Document("_id", new ObjectId(id)),
+                        new Document("$set", new Document("imagePath", imagePath)
+                                .append("description", description)
+                                .append("updatedAt", new Date()))
+                                .append("$inc", new Document("rev", 1L)));
+            case "delete":
+                if (id == null || !ObjectId.isValid(id)) {
+                    throw new IllegalArgumentException("A valid id is required");
+                }
+                result.append("id", id);
+                return new DeleteOneModel<>(new Document("_id", new ObjectId(id)));
+            default:
+                throw new IllegalArgumentException("Unknown op: " + op);
+        }
+    }
+
+    /**
+     * Reads a field as a string, whatever type the client sent it as.
+     */
+    private static String stringField(Document operation, String key) {
+        Object value = operation.get(key);
+        return value == null ? null : value.toString();
+    }
+
+    /**
+     * Sends one batch with bulkWrite, fills in the result of each item and
+     * records the successful ones in the change log. The batch lists are
+     * cleared afterwards.
+     * @return true if every item in the batch succeeded
+     */
+    private static boolean executeBatch(List<WriteModel<Document>> batch, List<Document> batchResults, boolean ordered) {
+        if (batch.isEmpty()) {
+            return true;
+        }
+        boolean succeeded = true;
+        try {
+            collection().bulkWrite(batch, new BulkWriteOptions().ordered(ordered));
+            for (Document result : batchResults) {
+                result.append("ok", true);
+            }
+        } catch (MongoBulkWriteException e) {
+            succeeded = false;
+            int firstFailure = batch.size();
+            for (BulkWriteError error : e.getWriteErrors()) {
+                batchResults.get(error.getIndex()).append("ok", false).append("error", error.getMessage());
+                firstFailure = Math.min(firstFailure, error.getIndex());
+            }
+            for (int i = 0; i < batchResults.size(); i++) {
+                Document result = batchResults.get(i);
+                if (result.containsKey("ok")) {
+                    continue;
+                }
+                if (ordered && i > firstFailure) {
+                    result.append("ok", false).append("error", "Skipped after an earlier failure");
+                } else {
+                    result.append("ok", true);
+                }
+            }
+        } catch (MongoException e) {
+            // Nothing says which items landed, so none are reported as written
+            succeeded = false;
+            for (Document result : batchResults) {
+                result.append("ok", false).append("error", "The batch failed: " + e.getMessage());
+            }
+        }
+        List<Document> changes = new ArrayList<>();
+        for (Document result : batchResults) {
+            if (result.getBoolean("ok", false)) {
+                changes.add(new Document("op", result.getString("op")).append("slideId", new ObjectId(result.getString("id"))));
+            }
+        }
+        recordChanges(changes);
+        batch.clear();
+        batchResults.clear();
+        return succeeded;
     }
 
     /**
@@ -85,8 +932,6 @@ public class MongoDBManager {
      * This method should be called when the application is shutting down.
      */
     public static void close() {
-        if (mongoClient != null) {
-            mongoClient.close();
-        }
+        MongoConnectionManager.stop();
     }
 }
\ No newline at end of file
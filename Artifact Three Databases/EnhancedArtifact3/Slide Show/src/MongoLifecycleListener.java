@@ -0,0 +1,60 @@
+//Daniel Escobedo
+//CS-499 SNHU
+//Artifact 3: Databases 
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+
+/**
+ * Opens the slide repository when the web app is deployed, which for MongoDB
+ * starts the connection and ensures the slide indexes exist, and closes it,
+ * along with the slide mirror, when the web app is stopped. The repository
+ * and connection settings are read from web.xml context parameters, and
+ * system properties with the same names take precedence, so a server can
+ * override what the web app ships with.
+ */
+@WebListener
+public class MongoLifecycleListener implements ServletContextListener {
+    private SlideRepository repository;
+
+    @Override
+    public void contextInitialized(ServletContextEvent event) {
+        ServletContext context = event.getServletContext();
+        Properties config = MongoConnectionManager.configFromSystemProperties();
+        List<String> keys = new ArrayList<>(Arrays.asList(MongoConnectionManager.getConfigKeys()));
+        keys.addAll(Arrays.asList(SlideRepository.CONFIG_KEYS));
+        for (String key : keys) {
+            String value = System.getProperty(key);
+            if (value == null || value.isEmpty()) {
+                value = context.getInitParameter(key);
+            }
+            if (value != null && !value.isEmpty()) {
+                config.setProperty(key, value);
+            }
+        }
+        repository = SlideRepository.create(config);
+        try {
+            repository.open();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open the slide repository", e);
+        }
+        SlideMirror.setRepository(repository);
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent event) {
+        SlideMirror.stop();
+        if (repository != null) {
+            repository.close();
+        }
+    }
+}
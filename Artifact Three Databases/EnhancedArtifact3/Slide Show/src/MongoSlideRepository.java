@@ -0,0 +1,224 @@
+//Daniel Escobedo
+//CS-499 SNHU
+//Artifact 3: Databases 
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoException;
+import com.mongodb.MongoInterruptedException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import org.bson.BsonDocument;
+import org.bson.BsonObjectId;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+/**
+ * Slide repository backed by MongoDB, through MongoDBManager. The database
+ * is shared, so other clients write to it too; their changes are followed
+ * with a change stream where the server supports one.
+ */
+public class MongoSlideRepository implements SlideRepository {
+    private static final int LOAD_BATCH_SIZE = 500;
+    // Server errors meaning change streams are not available at all: a
+    // standalone server, or one too old to know the $changeStream stage
+    private static final int CHANGE_STREAMS_REPLICA_SET_ONLY = 40573;
+    private static final int UNRECOGNIZED_PIPELINE_STAGE = 40324;
+    // Server errors meaning a change stream cannot be resumed from its token
+    private static final int CHANGE_STREAM_FATAL = 280;
+    private static final int CHANGE_STREAM_HISTORY_LOST = 286;
+    private static final long MAX_RESUME_DELAY_MS = 30000;
+
+    private final Properties config;
+
+    /**
+     * Constructor for MongoSlideRepository.
+     * @param config the mongo.* connection settings; missing keys use their defaults
+     */
+    public MongoSlideRepository(Properties config) {
+        this.config = config;
+    }
+
+    /**
+     * Starts the connection and ensures the slide indexes exist.
+     */
+    @Override
+    public void open() {
+        MongoConnectionManager.start(config);
+        MongoDBManager.ensureIndexes();
+    }
+
+    @Override
+    public void close() {
+        MongoDBManager.close();
+    }
+
+    @Override
+    public boolean isShared() {
+        return true;
+    }
+
+    @Override
+    public void forEachSlide(Consumer<Document> action) {
+        try (MongoCursor<Document> cursor = MongoDBManager.openSlideCursor(null, null, 0, LOAD_BATCH_SIZE)) {
+            while (cursor.hasNext()) {
+                action.accept(cursor.next());
+            }
+        }
+    }
+
+    @Override
+    public Document getCollectionVersion() {
+        return MongoDBManager.getCollectionVersion();
+    }
+
+    @Override
+    public Document addSlide(String imagePath, String description) {
+        return MongoDBManager.addSlide(imagePath, description);
+    }
+
+    @Override
+    public Document updateSlide(String id, String imagePath, String description, Long expectedRev) {
+        return MongoDBManager.updateSlide(id, imagePath, description, expectedRev);
+    }
+
+    @Override
+    public boolean deleteSlide(String id) {
+        return MongoDBManager.deleteSlide(id);
+    }
+
+    @Override
+    public List<Document> bulkWriteSlides(List<Document> operations, int batchSize, boolean ordered) {
+        return MongoDBManager.bulkWriteSlides(operations, batchSize, ordered);
+    }
+
+    @Override
+    public Map<ObjectId, Document> getSlidesByIds(Collection<ObjectId> ids) {
+        return MongoDBManager.getSlidesByIds(ids);
+    }
+
+    @Override
+    public Document getChangesSince(long since, int limit) {
+        return MongoDBManager.getChangesSince(since, limit);
+    }
+
+    @Override
+    public long compactChanges(int retain) {
+        return MongoDBManager.compactChanges(retain);
+    }
+
+    @Override
+    public List<Document> getSlidesUpdatedSince(Date since) {
+        return MongoDBManager.getSlidesUpdatedSince(since);
+    }
+
+    @Override
+    public Set<ObjectId> getSlideIds() {
+        return MongoDBManager.getSlideIds();
+    }
+
+    /**
+     * Follows the slides collection's change stream. Change streams need a
+     * replica set or sharded cluster, so on a standalone server this fails
+     * straight away and the caller falls back to polling. Any other failure,
+     * such as a dropped connection or an election, reopens the stream after
+     * a backoff, resuming from the last change seen so none are skipped.
+     * @throws IllegalStateException if the stream broke before it could be
+     *         resumed, or its resume point has aged out of the oplog; changes
+     *         may have been missed, so the caller should reload and call again
+     */
+    @Override
+    public void watchChanges(Consumer<Document> stored, Consumer<ObjectId> removed, Runnable caughtUp) {
+        BsonDocument resumeToken = null;
+        int failures = 0;
+        while (!Thread.currentThread().isInterrupted()) {
+            ChangeStreamIterable<Document> stream = MongoDBManager.watchSlides();
+            if (resumeToken != null) {
+                stream = stream.resumeAfter(resumeToken);
+            }
+            try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = stream.cursor()) {
+                while (!Thread.currentThread().isInterrupted()) {
+                    ChangeStreamDocument<Document> change = cursor.tryNext();
+                    if (change == null) {
+                        // The server had nothing newer to send
+                        caughtUp.run();
+                    } else {
+                        passOn(change, stored, removed);
+                    }
+                    // Only taken once the change is passed on, so a failure resumes at or before it
+                    if (cursor.getResumeToken() != null) {
+                        resumeToken = cursor.getResumeToken();
+                    }
+                    failures = 0;
+                }
+                return;
+            } catch (MongoInterruptedException e) {
+                return;
+            } catch (MongoException e) {
+                if (changeStreamsUnsupported(e)) {
+                    throw new UnsupportedOperationException("Change streams unavailable: " + e.getMessage(), e);
+                }
+                if (resumeToken == null || resumeLost(e)) {
+                    throw new IllegalStateException("Change stream cannot be resumed: " + e.getMessage(), e);
+                }
+                failures++;
+                System.err.println("Change stream failed, resuming: " + e.getMessage());
+            }
+            try {
+                Thread.sleep(Math.min(MAX_RESUME_DELAY_MS, 500L << Math.min(failures, 6)));
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private static void passOn(ChangeStreamDocument<Document> change, Consumer<Document> stored, Consumer<ObjectId> removed) {
+        switch (change.getOperationType()) {
+            case INSERT:
+            case UPDATE:
+            case REPLACE:
+                if (change.getFullDocument() != null) {
+                    stored.accept(change.getFullDocument());
+                }
+                break;
+            case DELETE:
+                BsonValue key = change.getDocumentKey() == null ? null : change.getDocumentKey().get("_id");
+                if (key instanceof BsonObjectId) {
+                    removed.accept(((BsonObjectId) key).getValue());
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Checks whether the server cannot run change streams at all, as opposed
+     * to a failure that reopening the stream may get past.
+     */
+    private static boolean changeStreamsUnsupported(MongoException e) {
+        if (!(e instanceof MongoCommandException)) {
+            return false;
+        }
+        int code = e.getCode();
+        return code == CHANGE_STREAMS_REPLICA_SET_ONLY || code == UNRECOGNIZED_PIPELINE_STAGE
+                || String.valueOf(e.getMessage()).contains("only supported on replica sets");
+    }
+
+    /**
+     * Checks whether a stream can no longer be resumed from its token.
+     */
+    private static boolean resumeLost(MongoException e) {
+        return e.getCode() == CHANGE_STREAM_HISTORY_LOST || e.getCode() == CHANGE_STREAM_FATAL;
+    }
+}
@@ -0,0 +1,173 @@
+//Daniel Escobedo
+//CS-499 SNHU
+//Artifact 3: Databases 
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.bson.Document;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.google.gson.stream.MalformedJsonException;
+
+/**
+ * Servlet implementation class for importing and editing slides in bulk.
+ * The request body is either a JSON array or newline-delimited JSON
+ * (Content-Type application/x-ndjson) of operations such as
+ *   {"op": "add", "imagePath": "...", "description": "..."}
+ *   {"op": "update", "id": "...", "imagePath": "...", "description": "..."}
+ *   {"op": "delete", "id": "..."}
+ * Operations are sent to the slide repository in batches and the response
+ * lists the outcome of every item, so one bad item does not fail the whole
+ * import. The body is read and the import run on a SlideRequestExecutor,
+ * so a long import does not hold a connector thread.
+ */
+@WebServlet(value = "/slides/bulk", asyncSupported = true)
+public class SlideBulkServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+    private static final int DEFAULT_BATCH_SIZE = 1000;
+    private static final int MAX_BATCH_SIZE = 10000;
+    private static final Type OPERATION_TYPE = new TypeToken<Map<String, Object>>() { }.getType();
+    private Gson gson = new Gson();
+    private final SlideRequestExecutor writeExecutor =
+            SlideRequestExecutor.fromSystemProperties("slideshow.async.bulkTimeoutMs", 600000L);
+
+    @Override
+    public void init() throws ServletException {
+        SlideMirror.start();
+    }
+
+    @Override
+    public void destroy() {
+        writeExecutor.shutdown();
+    }
+
+    /**
+     * Handles POST requests. Optional parameters:
+     *   batchSize - operations per bulkWrite round-trip (default 1000, at most 10000)
+     *   ordered   - true to stop at the first failure (default false)
+     */
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        int batchSize = DEFAULT_BATCH_SIZE;
+        String batchParam = request.getParameter("batchSize");
+        try {
+            if (batchParam != null && !batchParam.isEmpty()) {
+                batchSize = Math.min(Integer.parseInt(batchParam), MAX_BATCH_SIZE);
+            }
+        } catch (NumberFormatException e) {
+            batchSize = 0;
+        }
+        if (batchSize <= 0) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+        boolean ordered = Boolean.parseBoolean(request.getParameter("ordered"));
+        int size = batchSize;
+
+        writeExecutor.execute(request, response, () -> {
+            List<Document> operations;
+            try {
+                String contentType = request.getContentType();
+                if (contentType != null && contentType.startsWith("application/x-ndjson")) {
+                    operations = readNdjson(request.getReader());
+                } else {
+                    operations = readJsonArray(request.getReader());
+                }
+            } catch (JsonParseException | IllegalStateException | MalformedJsonException | EOFException e) {
+                // The streaming reader reports bad syntax and an empty body as IOExceptions of its own
+                String message = "Malformed bulk request: " + e.getMessage();
+                return reply -> reply.sendError(HttpServletResponse.SC_BAD_REQUEST, message);
+            }
+            List<Document> results = SlideMirror.bulkWriteSlides(operations, size, ordered);
+            return reply -> writeResults(reply, results);
+        });
+    }
+
+    /**
+     * Writes the outcome of every operation, with totals.
+     */
+    private void writeResults(HttpServletResponse response, List<Document> results) throws IOException {
+        int failed = 0;
+        for (Document result : results) {
+            if (!result.getBoolean("ok", false)) {
+                failed++;
+            }
+        }
+
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        try (JsonWriter json = new JsonWriter(new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8))) {
+            json.beginObject();
+            json.name("total").value(results.size());
+            json.name("succeeded").value(results.size() - failed);
+            json.name("failed").value(failed);
+            json.name("results").beginArray();
+            for (Document result : results) {
+                json.beginObject();
+                json.name("index").value(result.getInteger("index"));
+                json.name("ok").value(result.getBoolean("ok", false));
+                if (result.getString("op") != null) {
+                    json.name("op").value(result.getString("op"));
+                }
+                if (result.getString("id") != null) {
+                    json.name("id").value(result.getString("id"));
+                }
+                if (result.getString("error") != null) {
+                    json.name("error").value(result.getString("error"));
+                }
+                json.endObject();
+            }
+            json.endArray();
+            json.endObject();
+        }
+    }
+
+    /**
+     * Reads a JSON array of operations one element at a time.
+     */
+    private List<Document> readJsonArray(BufferedReader body) throws IOException {
+        List<Document> operations = new ArrayList<>();
+        JsonReader reader = new JsonReader(body);
+        reader.beginArray();
+        while (reader.peek() != JsonToken.END_ARRAY) {
+            Map<String, Object> operation = gson.fromJson(reader, OPERATION_TYPE);
+            operations.add(operation == null ? new Document() : new Document(operation));
+        }
+        reader.endArray();
+        return operations;
+    }
+
+    /**
+     * Reads one operation per non-blank line.
+     */
+    private List<Document> readNdjson(BufferedReader body) throws IOException {
+        List<Document> operations = new ArrayList<>();
+        String line;
+        while ((line = body.readLine()) != null) {
+            if (!line.trim().isEmpty()) {
+                Map<String, Object> operation = gson.fromJson(line, OPERATION_TYPE);
+                operations.add(operation == null ? new Document() : new Document(operation));
+            }
+        }
+        return operations;
+    }
+}
@@ -0,0 +1,163 @@
+//Daniel Escobedo
+//CS-499 SNHU
+//Artifact 3: Databases 
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiPredicate;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * A bounded, size-aware LRU cache used by the slide show to hold slides and
+ * slide images. Each entry is weighed in bytes and the least recently used
+ * entries are evicted once the configured byte budget is exceeded. Hit, miss
+ * and eviction counters can be read at runtime.
+ */
+public class SlideCache<K, V> {
+
+    private final LinkedHashMap<K, Entry<V>> entries;
+    private final ToLongFunction<V> weigher;
+    private final long maxBytes;
+    private long weightedSize;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * A cached value along with the weight it was charged when it was added,
+     * so values whose size changes later are still released correctly.
+     */
+    private static class Entry<V> {
+        final V value;
+        final long weight;
+
+        Entry(V value, long weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * Constructor for SlideCache.
+     * @param maxBytes The byte budget the cache may hold before evicting
+     * @param weigher Estimates the size in bytes of a cached value
+     */
+    public SlideCache(long maxBytes, ToLongFunction<V> weigher) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Cache budget must be positive: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+        this.weigher = weigher;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true); // Access order gives LRU iteration
+    }
+
+    /**
+     * Looks up a value and marks it as most recently used.
+     * Time Complexity: O(1)
+     * @param key The cache key
+     * @return The cached value, or null on a miss
+     */
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value;
+    }
+
+    /**
+     * Adds or replaces a value, evicting least recently used entries while the
+     * cache is over budget. A value larger than the whole budget is not cached.
+     * Time Complexity: O(1) amortized
+     * @param key The cache key
+     * @param value The value to cache
+     */
+    public synchronized void put(K key, V value) {
+        long weight = weigher.applyAsLong(value);
+        Entry<V> previous = entries.remove(key);
+        if (previous != null) {
+            weightedSize -= previous.weight;
+        }
+        if (weight > maxBytes) {
+            return;
+        }
+        entries.put(key, new Entry<>(value, weight));
+        weightedSize += weight;
+
+        Iterator<Entry<V>> it = entries.values().iterator();
+        while (weightedSize > maxBytes && it.hasNext()) {
+            weightedSize -= it.next().weight;
+            it.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Removes a single entry from the cache.
+     * @param key The cache key
+     */
+    public synchronized void invalidate(K key) {
+        Entry<V> removed = entries.remove(key);
+        if (removed != null) {
+            weightedSize -= removed.weight;
+        }
+    }
+
+    /**
+     * Removes every entry whose key matches the given condition.
+     * Time Complexity: O(n) where n is the number of cached entries
+     * @param condition Selects the keys to drop
+     */
+    public synchronized void invalidateIf(Predicate<K> condition) {
+        Iterator<Map.Entry<K, Entry<V>>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<K, Entry<V>> entry = it.next();
+            if (condition.test(entry.getKey())) {
+                weightedSize -= entry.getValue().weight;
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes every entry whose key and value match the given condition.
+     * Time Complexity: O(n) where n is the number of cached entries
+     * @param condition Selects the entries to drop
+     */
+    public synchronized void invalidateEntriesIf(BiPredicate<K, V> condition) {
+        Iterator<Map.Entry<K, Entry<V>>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<K, Entry<V>> entry = it.next();
+            if (condition.test(entry.getKey(), entry.getValue().value)) {
+                weightedSize -= entry.getValue().weight;
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes every entry from the cache.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        weightedSize = 0;
+    }
+
+    // Runtime statistics
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+    public synchronized long getEvictions() { return evictions; }
+    public synchronized long getWeightedSize() { return weightedSize; }
+    public synchronized int getEntryCount() { return entries.size(); }
+    public long getMaxBytes() { return maxBytes; }
+
+    @Override
+    public synchronized String toString() {
+        return "SlideCache[entries=" + entries.size() + ", bytes=" + weightedSize + "/" + maxBytes
+                + ", hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + "]";
+    }
+}
@@ -0,0 +1,164 @@
+//Daniel Escobedo
+//CS-499 SNHU
+//Artifact 3: Databases 
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Servlet that returns the slide changes made after a version, so a viewer
+ * that was offline catches up by downloading only what changed instead of
+ * the whole deck. Changes come from the change log the SlideRepository keeps
+ * for every add, update and delete. The response looks like
+ *   {"version": 42, "resync": false, "more": false, "changes": [
+ *     {"version": 40, "op": "upsert", "slide": {...}},
+ *     {"version": 42, "op": "delete", "id": "..."}]}
+ * Each slide appears at most once, with its current fields, so a viewer
+ * applies the changes in order and then asks again with since=version. If
+ * more is true it should ask again straight away. If resync is true the log
+ * no longer reaches back to its version and it must reload the deck from
+ * GET /slides, then continue from the version given here. That version is
+ * the one the mirror serving GET /slides is known to include, which can
+ * trail the collection, so the viewer replays anything the mirror had not
+ * picked up yet instead of skipping it.
+ *
+ * The log is compacted in the background: entries superseded by a newer
+ * change to the same slide are dropped, and beyond the retained count the
+ * oldest entries are dropped too, which makes viewers older than them resync.
+ *
+ * Configuration (system properties):
+ *   slideshow.changes.retain          change log entries kept by compaction (default 10000)
+ *   slideshow.changes.compactMinutes  interval between compactions, 0 for none (default 10)
+ *   slideshow.changes.graceMs         time a change may take to be logged (default 5000)
+ */
+@WebServlet(value = "/slides/changes", asyncSupported = true)
+public class SlideChangesServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    private final SlideRequestExecutor requestExecutor = SlideRequestExecutor.fromSystemProperties();
+    private ScheduledExecutorService compactor;
+
+    @Override
+    public void init() throws ServletException {
+        int retain = Integer.getInteger("slideshow.changes.retain", 10000);
+        long minutes = Long.getLong("slideshow.changes.compactMinutes", 10L);
+        if (minutes <= 0) {
+            return;
+        }
+        compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "slide-changes-compactor");
+            t.setDaemon(true);
+            return t;
+        });
+        compactor.scheduleWithFixedDelay(() -> {
+            try {
+                long removed = SlideMirror.getRepository().compactChanges(retain);
+                if (removed > 0) {
+                    System.err.println("Compacted " + removed + " slide change log entries");
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Failed to compact the slide change log: " + e.getMessage());
+            }
+        }, minutes, minutes, TimeUnit.MINUTES);
+    }
+
+    @Override
+    public void destroy() {
+        if (compactor != null) {
+            compactor.shutdownNow();
+        }
+        requestExecutor.shutdown();
+    }
+
+    /**
+     * Handles GET requests. Parameters:
+     *   since - the version the viewer has applied, 0 or absent for none
+     *   limit - the maximum number of log entries to read (at most MAX_PAGE_SIZE)
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        String sinceParam = request.getParameter("since");
+        String limitParam = request.getParameter("limit");
+        long since;
+        int limit;
+        try {
+            since = sinceParam == null || sinceParam.isEmpty() ? 0 : Long.parseLong(sinceParam);
+            limit = limitParam == null || limitParam.isEmpty() ? MAX_PAGE_SIZE : Math.min(Integer.parseInt(limitParam), MAX_PAGE_SIZE);
+        } catch (NumberFormatException e) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+        if (since < 0 || limit <= 0) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+
+        requestExecutor.execute(request, response, () -> {
+            Document log = SlideMirror.getRepository().getChangesSince(since, limit);
+            boolean resync = log.getBoolean("resync");
+            long version = resync ? SlideMirror.getVersion() : log.getLong("version");
+            // Keep only the newest entry per slide, in the order of those entries
+            Map<ObjectId, Document> latest = new LinkedHashMap<>();
+            for (Document change : log.getList("changes", Document.class)) {
+                ObjectId id = change.getObjectId("slideId");
+                latest.remove(id);
+                latest.put(id, change);
+            }
+            Map<ObjectId, Document> slides = SlideMirror.getRepository().getSlidesByIds(latest.keySet());
+
+            return reply -> {
+                reply.setContentType("application/json");
+                reply.setCharacterEncoding("UTF-8");
+                reply.setHeader("Cache-Control", "no-cache");
+                try (JsonWriter json = new JsonWriter(new OutputStreamWriter(reply.getOutputStream(), StandardCharsets.UTF_8))) {
+                    json.beginObject();
+                    json.name("version").value(version);
+                    json.name("resync").value(resync);
+                    json.name("more").value(log.getBoolean("more"));
+                    json.name("changes").beginArray();
+                    for (Map.Entry<ObjectId, Document> entry : latest.entrySet()) {
+                        writeChange(json, entry.getValue(), slides.get(entry.getKey()));
+                    }
+                    json.endArray();
+                    json.endObject();
+                }
+            };
+        });
+    }
+
+    /**
+     * Writes one change. A delete, or an add or update of a slide that has
+     * since been deleted, is sent as a delete; the delete's own entry may
+     * not have been read yet.
+     */
+    private static void writeChange(JsonWriter json, Document change, Document slide) throws IOException {
+        json.beginObject();
+        json.name("version").value(change.getLong("version"));
+        if (slide == null) {
+            json.name("op").value("delete");
+            json.name("id").value(change.getObjectId("slideId").toHexString());
+        } else {
+            json.name("op").value("upsert");
+            json.name("slide");
+            SlideManagementServlet.writeSlide(json, slide, null);
+        }
+        json.endObject();
+    }
+}
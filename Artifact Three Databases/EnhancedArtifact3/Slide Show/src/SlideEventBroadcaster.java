@@ -0,0 +1,349 @@
+//Daniel Escobedo
+//CS-499 SNHU
+//Artifact 3: Databases 
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * This class pushes slide changes to connected viewers as Server-Sent Events.
+ * It listens to SlideMirror, so every change is seen whether it was written
+ * through this server or by another client, and turns each one into a small
+ * added, updated or deleted event carrying the slide's id and fields. An
+ * event is encoded once and the same bytes are queued for every subscriber.
+ *
+ * Subscribers use non-blocking servlet output, so a viewer never holds a
+ * thread while it waits for data: writes run on a small fixed pool and stop
+ * as soon as a connection's buffer is full, resuming when the container
+ * reports it writable again. A viewer that falls too far behind is
+ * disconnected and catches up when its browser reconnects. Recent events are
+ * kept so a reconnecting viewer can be sent just what it missed, by
+ * Last-Event-ID; a viewer that missed more than that, or that connects for
+ * the first time, is sent a resync event telling it to reload the deck.
+ */
+public class SlideEventBroadcaster implements SlideMirror.SlideListener {
+    // Distinguishes event ids from different server runs, which number events separately
+    private static final String EPOCH = Long.toString(System.currentTimeMillis(), 36);
+    private static final byte[] HEARTBEAT = ": keepalive\n\n".getBytes(StandardCharsets.UTF_8);
+    private static final String RETRY_MS = "3000";
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final ScheduledThreadPoolExecutor pool;
+    private final int maxSubscribers;
+    private final int maxPending;
+    private final byte[][] recentEvents;
+    private long sequence; // Number of the last event; guarded by this
+
+    /**
+     * Constructor for SlideEventBroadcaster.
+     * @param threads the number of threads that write to subscribers
+     * @param maxSubscribers the number of viewers that may be connected at once
+     * @param maxPending the events a viewer may fall behind by before it is disconnected
+     * @param replay the number of recent events kept for reconnecting viewers
+     * @param heartbeatSeconds how often idle connections are sent a comment
+     */
+    public SlideEventBroadcaster(int threads, int maxSubscribers, int maxPending, int replay, long heartbeatSeconds) {
+        AtomicInteger count = new AtomicInteger();
+        this.pool = new ScheduledThreadPoolExecutor(threads, r -> {
+            Thread t = new Thread(r, "slide-events-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.maxSubscribers = maxSubscribers;
+        this.maxPending = maxPending;
+        this.recentEvents = new byte[Math.max(1, replay)][];
+        // Heartbeats keep proxies from closing idle streams and find dead connections
+        pool.scheduleAtFixedRate(() -> {
+            for (Subscriber subscriber : subscribers) {
+                subscriber.send(HEARTBEAT);
+            }
+        }, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Creates a broadcaster configured from system properties.
+     * @return the broadcaster
+     */
+    public static SlideEventBroadcaster fromSystemProperties() {
+        return new SlideEventBroadcaster(
+                Integer.getInteger("slideshow.events.threads", 4),
+                Integer.getInteger("slideshow.events.maxSubscribers", 10000),
+                Integer.getInteger("slideshow.events.maxPending", 1024),
+                Integer.getInteger("slideshow.events.replay", 1024),
+                Long.getLong("slideshow.events.heartbeatSeconds", 20L));
+    }
+
+    /**
+     * @return whether another viewer can be connected
+     */
+    public boolean hasCapacity() {
+        return subscribers.size() < maxSubscribers;
+    }
+
+    /**
+     * @return the number of connected viewers
+     */
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * Starts streaming events to an asynchronous request. The caller must
+     * have set the response headers and started async mode.
+     * @param async the request's async context
+     * @param lastEventId the id of the last event the viewer saw, or null
+     * @throws IOException if the response cannot be written
+     */
+    public void subscribe(AsyncContext async, String lastEventId) throws IOException {
+        Subscriber subscriber = new Subscriber(async);
+        async.addListener(subscriber);
+        subscriber.send(("retry: " + RETRY_MS + "\n\n").getBytes(StandardCharsets.UTF_8));
+        // Replay and registration happen together, so no event is missed or sent twice
+        synchronized (this) {
+            List<byte[]> missed = eventsAfter(lastEventId);
+            if (missed == null) {
+                subscriber.send(event(currentId(), "resync", "{}"));
+            } else {
+                for (byte[] event : missed) {
+                    subscriber.send(event);
+                }
+            }
+            subscribers.add(subscriber);
+        }
+        async.getResponse().getOutputStream().setWriteListener(subscriber);
+    }
+
+    /**
+     * Disconnects every viewer and stops the writer threads.
+     */
+    public void shutdown() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.close();
+        }
+        pool.shutdownNow();
+    }
+
+    /**
+     * Turns a change in the mirror into an event and queues it for every
+     * viewer. Runs on the thread that changed the mirror and only queues, so
+     * it does not wait on any connection.
+     */
+    @Override
+    public synchronized void slideChanged(ObjectId id, Long oldPosition, Long newPosition) {
+        String type = newPosition == null ? "deleted" : oldPosition == null ? "added" : "updated";
+        Document slide = newPosition == null ? null : SlideMirror.getSlide(id.toHexString());
+        String data;
+        try {
+            data = toJson(id, slide);
+        } catch (IOException e) {
+            System.err.println("Failed to encode slide event for " + id + ": " + e.getMessage());
+            return;
+        }
+        sequence++;
+        byte[] event = event(currentId(), type, data);
+        recentEvents[(int) ((sequence - 1) % recentEvents.length)] = event;
+        for (Subscriber subscriber : subscribers) {
+            subscriber.send(event);
+        }
+    }
+
+    private String currentId() {
+        return EPOCH + "-" + sequence;
+    }
+
+    /**
+     * Returns the kept events after the given id, oldest first.
+     * @return the events, or null if the id is unknown or too old to replay from
+     */
+    private List<byte[]> eventsAfter(String lastEventId) {
+        if (lastEventId == null || !lastEventId.startsWith(EPOCH + "-")) {
+            return null;
+        }
+        long last;
+        try {
+            last = Long.parseLong(lastEventId.substring(EPOCH.length() + 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (last > sequence || sequence - last > recentEvents.length) {
+            return null;
+        }
+        List<byte[]> missed = new ArrayList<>();
+        for (long n = last + 1; n <= sequence; n++) {
+            missed.add(recentEvents[(int) ((n - 1) % recentEvents.length)]);
+        }
+        return missed;
+    }
+
+    /**
+     * Encodes a slide as JSON in the same form GET /slides uses, or just its
+     * _id when it was deleted.
+     */
+    private static String toJson(ObjectId id, Document slide) throws IOException {
+        StringWriter out = new StringWriter();
+        JsonWriter json = new JsonWriter(out);
+        if (slide != null) {
+            SlideManagementServlet.writeSlide(json, slide, null);
+        } else {
+            json.beginObject().name("_id").beginObject().name("$oid").value(id.toHexString()).endObject().endObject();
+        }
+        json.flush();
+        return out.toString();
+    }
+
+    /**
+     * Formats one event. The JSON is written on a single line, so it fits in
+     * one data field.
+     */
+    private static byte[] event(String id, String type, String data) {
+        return ("id: " + id + "\nevent: " + type + "\ndata: " + data + "\n\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * One connected viewer. Events are queued here and written by the pool,
+     * one drain at a time per viewer, for as long as the connection accepts
+     * data without blocking.
+     */
+    private final class Subscriber implements WriteListener, AsyncListener {
+        private final AsyncContext async;
+        private final ConcurrentLinkedQueue<byte[]> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pending = new AtomicInteger();
+        private final AtomicBoolean draining = new AtomicBoolean(); // A drain is queued or running
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private volatile boolean listening; // Set once the container accepts the write listener
+        private volatile boolean wokenUp; // onWritePossible ran while a drain was finishing
+
+        private Subscriber(AsyncContext async) {
+            this.async = async;
+        }
+
+        /**
+         * Queues bytes for the viewer, disconnecting it if it is too far behind.
+         */
+        private void send(byte[] bytes) {
+            if (closed.get()) {
+                return;
+            }
+            if (pending.incrementAndGet() > maxPending) {
+                close();
+                return;
+            }
+            queue.add(bytes);
+            scheduleDrain();
+        }
+
+        private void scheduleDrain() {
+            if (listening && !closed.get() && draining.compareAndSet(false, true)) {
+                try {
+                    pool.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    close(); // Shutting down
+                }
+            }
+        }
+
+        /**
+         * Writes queued events until the queue is empty or the connection's
+         * buffer is full. In the second case the container calls
+         * onWritePossible once it has room again.
+         */
+        private void drain() {
+            boolean blocked = false;
+            wokenUp = false;
+            try {
+                ServletOutputStream out = async.getResponse().getOutputStream();
+                while (!closed.get()) {
+                    if (!out.isReady()) {
+                        blocked = true;
+                        break;
+                    }
+                    byte[] next = queue.poll();
+                    if (next == null) {
+                        out.flush();
+                        blocked = !out.isReady();
+                        break;
+                    }
+                    pending.decrementAndGet();
+                    out.write(next);
+                }
+            } catch (IOException | IllegalStateException e) {
+                close();
+            } finally {
+                draining.set(false);
+            }
+            // Something arrived after the queue was found empty, or the
+            // connection became writable again before this drain finished
+            if ((!blocked || wokenUp) && !queue.isEmpty()) {
+                scheduleDrain();
+            }
+        }
+
+        /**
+         * Closes the stream and forgets the viewer. Safe to call more than once.
+         */
+        private void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            subscribers.remove(this);
+            queue.clear();
+            try {
+                async.complete();
+            } catch (IllegalStateException e) {
+                // Already completed by the container
+            }
+        }
+
+        @Override
+        public void onWritePossible() {
+            listening = true;
+            wokenUp = true;
+            scheduleDrain();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            close();
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            close();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            close();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            close();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
@@ -0,0 +1,76 @@
+//Daniel Escobedo
+//CS-499 SNHU
+//Artifact 3: Databases 
+
+import java.io.IOException;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Servlet that streams slide changes as Server-Sent Events, so viewers get
+ * added, updated and deleted slides pushed to them instead of re-fetching
+ * GET /slides. Each connection is held open in async mode and written by
+ * SlideEventBroadcaster, so it holds no connector thread while idle.
+ *
+ * A viewer should open the stream first and load the deck from GET /slides
+ * when it receives a resync event, which is the first event on a new
+ * connection. Browsers reconnect on their own and send Last-Event-ID, and
+ * are then sent only the events they missed.
+ *
+ * Configuration (system properties):
+ *   slideshow.events.threads           threads writing to viewers (default 4)
+ *   slideshow.events.maxSubscribers    viewers connected at once before answering 503 (default 10000)
+ *   slideshow.events.maxPending        events a viewer may fall behind by before it is dropped (default 1024)
+ *   slideshow.events.replay            recent events kept for reconnecting viewers (default 1024)
+ *   slideshow.events.heartbeatSeconds  interval between keepalive comments (default 20)
+ */
+@WebServlet(value = "/slides/events", asyncSupported = true)
+public class SlideEventServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+
+    private final SlideEventBroadcaster broadcaster = SlideEventBroadcaster.fromSystemProperties();
+
+    @Override
+    public void init() throws ServletException {
+        SlideMirror.start();
+        SlideMirror.addSlideListener(broadcaster);
+    }
+
+    @Override
+    public void destroy() {
+        SlideMirror.removeSlideListener(broadcaster);
+        broadcaster.shutdown();
+    }
+
+    /**
+     * Handles GET requests. Opens an event stream for the viewer.
+     * The last event id can also be given as the lastEventId parameter, for
+     * clients that cannot set the Last-Event-ID header.
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        if (!broadcaster.hasCapacity()) {
+            response.setHeader("Retry-After", "30");
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return;
+        }
+        String lastEventId = request.getHeader("Last-Event-ID");
+        if (lastEventId == null) {
+            lastEventId = request.getParameter("lastEventId");
+        }
+
+        response.setContentType("text/event-stream");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+        response.setHeader("X-Accel-Buffering", "no"); // Stop proxies such as nginx holding events back
+
+        AsyncContext async = request.startAsync();
+        async.setTimeout(0); // Streams stay open until the viewer leaves
+        broadcaster.subscribe(async, lastEventId);
+    }
+}
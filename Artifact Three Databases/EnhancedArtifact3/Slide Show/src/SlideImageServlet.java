@@ -0,0 +1,263 @@
+//Daniel Escobedo
+//CS-499 SNHU
+//Artifact 3: Databases 
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.UUID;
+
+import javax.imageio.ImageIO;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+/**
+ * Servlet implementation class for serving slide images by slide id, so the
+ * admin page no longer downloads every full-size image to show a list.
+ *   GET /slides/image?id=...&size=thumb     fits within 200x200
+ *   GET /slides/image?id=...&size=view      fits within 800x500
+ *   GET /slides/image?id=...&size=original  the image file itself (default)
+ * Resized variants are generated once and kept on disk, and regenerated when
+ * the source image changes. Files are sent with FileChannel.transferTo and
+ * support Range and If-Modified-Since. Adding a v parameter, such as the
+ * slide's updatedAt, marks the URL as never changing so browsers can cache it.
+ *
+ * Image paths are resolved against -Dslideshow.image.root (default the
+ * working directory) and nothing outside it is served. Variants are stored in
+ * -Dslideshow.image.cache.dir (default a directory under java.io.tmpdir).
+ */
+@WebServlet("/slides/image")
+public class SlideImageServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+    private static final int THUMB_SIZE = 200;
+    private static final int VIEW_WIDTH = 800;
+    private static final int VIEW_HEIGHT = 500;
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+
+    private Path imageRoot;
+    private Path cacheDir;
+
+    @Override
+    public void init() throws ServletException {
+        SlideMirror.start();
+        try {
+            imageRoot = Paths.get(System.getProperty("slideshow.image.root", ".")).toRealPath();
+            cacheDir = Paths.get(System.getProperty("slideshow.image.cache.dir",
+                    Paths.get(System.getProperty("java.io.tmpdir"), "slideshow-images").toString()));
+            Files.createDirectories(cacheDir);
+        } catch (IOException e) {
+            throw new ServletException("Failed to set up slide image directories", e);
+        }
+    }
+
+    /**
+     * Handles GET requests. Responds 400 for a bad id or size and 404 if the
+     * slide or its image does not exist.
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        String id = request.getParameter("id");
+        String size = request.getParameter("size") == null ? "original" : request.getParameter("size");
+        if (id == null || !ObjectId.isValid(id)
+                || !(size.equals("thumb") || size.equals("view") || size.equals("original"))) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+        Document slide = SlideMirror.getSlide(id);
+        Path source = slide == null ? null : resolve(slide.getString("imagePath"));
+        if (source == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        Path file;
+        String contentType;
+        if (size.equals("original")) {
+            file = source;
+            contentType = getServletContext().getMimeType(source.getFileName().toString());
+            if (contentType == null || !contentType.startsWith("image/")) {
+                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+        } else {
+            file = size.equals("thumb") ? variant(source, size, THUMB_SIZE, THUMB_SIZE) : variant(source, size, VIEW_WIDTH, VIEW_HEIGHT);
+            if (file == null) {
+                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+            contentType = "image/jpeg";
+        }
+        sendFile(request, response, file, contentType);
+    }
+
+    /**
+     * Resolves a slide's image path under the image root.
+     * @return the image file, or null if it is missing or outside the root
+     */
+    private Path resolve(String imagePath) {
+        if (imagePath == null || imagePath.isEmpty()) {
+            return null;
+        }
+        try {
+            Path path = imageRoot.resolve(imagePath).toRealPath();
+            return path.startsWith(imageRoot) && Files.isRegularFile(path) ? path : null;
+        } catch (IOException | InvalidPathException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the resized variant of an image, generating it first if it is
+     * missing or older than the source. Variants are written to a temporary
+     * file and moved into place, so readers never see a partial file.
+     * @return the variant, or null if the source cannot be decoded
+     */
+    private Path variant(Path source, String size, int maxWidth, int maxHeight) throws IOException {
+        String name = UUID.nameUUIDFromBytes(source.toString().getBytes(StandardCharsets.UTF_8)) + "-" + size + ".jpg";
+        Path target = cacheDir.resolve(name);
+        if (Files.exists(target) && Files.getLastModifiedTime(target).compareTo(Files.getLastModifiedTime(source)) >= 0) {
+            return target;
+        }
+
+        BufferedImage image = ImageIO.read(source.toFile());
+        if (image == null) {
+            return null;
+        }
+        // Fit within the bounds keeping the aspect ratio, and never enlarge
+        double scale = Math.min(1.0, Math.min((double) maxWidth / image.getWidth(), (double) maxHeight / image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+        BufferedImage scaled = SlideImagePipeline.scale(image, width, height);
+
+        Path temp = Files.createTempFile(cacheDir, name, ".tmp");
+        try {
+            ImageIO.write(scaled, "jpg", temp.toFile());
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return target;
+    }
+
+    /**
+     * Sends a file, honouring If-Modified-Since and a single byte Range.
+     */
+    private static void sendFile(HttpServletRequest request, HttpServletResponse response, Path file, String contentType) throws IOException {
+        long length = Files.size(file);
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+        response.setDateHeader("Last-Modified", lastModified);
+        response.setHeader("Accept-Ranges", "bytes");
+        response.setHeader("Cache-Control", request.getParameter("v") != null ? IMMUTABLE : "no-cache");
+
+        long ifModifiedSince = dateHeader(request, "If-Modified-Since");
+        // HTTP dates only have whole seconds
+        if (ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long start = 0;
+        long end = length - 1;
+        String range = request.getHeader("Range");
+        String ifRange = request.getHeader("If-Range");
+        if (range != null && (ifRange == null || dateHeader(request, "If-Range") / 1000 == lastModified / 1000)) {
+            long[] bounds = parseRange(range, length);
+            if (bounds == null) {
+                response.setHeader("Content-Range", "bytes */" + length);
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            if (bounds.length == 2) {
+                start = bounds[0];
+                end = bounds[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+
+        response.setContentType(contentType);
+        response.setContentLengthLong(end - start + 1);
+        if (length == 0) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            while (position <= end) {
+                long sent = channel.transferTo(position, end - position + 1, out);
+                if (sent <= 0) {
+                    break; // The file was truncated while it was being sent
+                }
+                position += sent;
+            }
+        }
+    }
+
+    /**
+     * Parses a Range header. Only a single range is honoured; several ranges
+     * are answered with the whole file.
+     * @return {start, end} for a satisfiable range, an empty array to send the
+     *         whole file, or null if the range cannot be satisfied
+     */
+    private static long[] parseRange(String header, long length) {
+        String value = header.trim().toLowerCase(Locale.ROOT);
+        if (!value.startsWith("bytes=") || value.contains(",")) {
+            return new long[0];
+        }
+        String spec = value.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return new long[0];
+        }
+        try {
+            long start;
+            long end;
+            if (dash == 0) {
+                // Suffix range: the last n bytes
+                long suffix = Long.parseLong(spec.substring(1));
+                if (suffix <= 0) {
+                    return null;
+                }
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(spec.substring(0, dash));
+                end = dash == spec.length() - 1 ? length - 1 : Math.min(Long.parseLong(spec.substring(dash + 1)), length - 1);
+            }
+            if (start >= length || start > end) {
+                return null;
+            }
+            return new long[] {start, end};
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+
+    /**
+     * Reads a date header, treating a malformed date as absent.
+     * @return the date in milliseconds, or -1
+     */
+    private static long dateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+}
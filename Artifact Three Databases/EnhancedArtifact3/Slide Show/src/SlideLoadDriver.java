@@ -0,0 +1,121 @@
+//Daniel Escobedo
+//CS-499 SNHU
+//Artifact 3: Databases 
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Command-line load driver for the slide servlets. It keeps a fixed number
+ * of clients sending requests back to back for a while and prints the
+ * throughput, status codes and latency percentiles.
+ *
+ * To compare the synchronous and asynchronous modes, run Tomcat with a small
+ * connector maxThreads in server.xml, once with -Dslideshow.async=false and
+ * once with the default, and drive each with more clients than maxThreads:
+ *
+ *   java SlideLoadDriver http://localhost:8080/Slideshowwebsite/slides post 200 30
+ *
+ * Measured on embedded Tomcat 9.0.83 with maxThreads=8, the in-memory
+ * repository with 20 ms added to each add, JDK 17 (so the 64-thread pool)
+ * and "post 200 20":
+ *
+ *   sync   346 req/s  p50 612 ms  p99 1380 ms
+ *   async  940 req/s  p50 178 ms  p99 1098 ms
+ *
+ * The synchronous mode tops out near maxThreads / 20 ms = 400 req/s.
+ *
+ * Arguments: base URL of /slides, mode (get, post or mixed), clients, seconds.
+ * Slides created by post and mixed runs are left in the database.
+ */
+public class SlideLoadDriver {
+    private static final int MAX_SAMPLES = 1_000_000;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: java SlideLoadDriver <slides url> [get|post|mixed] [clients] [seconds]");
+            System.exit(1);
+        }
+        String url = args[0];
+        String mode = args.length > 1 ? args[1] : "get";
+        int clients = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 30;
+
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        long[] latencies = new long[MAX_SAMPLES];
+        AtomicInteger samples = new AtomicInteger();
+        Map<Integer, AtomicInteger> statuses = new TreeMap<>();
+        AtomicInteger errors = new AtomicInteger();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        CountDownLatch done = new CountDownLatch(clients);
+        long started = System.nanoTime();
+        for (int c = 0; c < clients; c++) {
+            int clientId = c;
+            pool.execute(() -> {
+                int n = 0;
+                while (System.nanoTime() < deadline) {
+                    HttpRequest request = buildRequest(url, mode, clientId, n++);
+                    long begin = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                        int sample = samples.getAndIncrement();
+                        if (sample < MAX_SAMPLES) {
+                            latencies[sample] = System.nanoTime() - begin;
+                        }
+                        synchronized (statuses) {
+                            statuses.computeIfAbsent(response.statusCode(), k -> new AtomicInteger()).incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    }
+                }
+                done.countDown();
+            });
+        }
+        done.await();
+        double elapsed = (System.nanoTime() - started) / 1e9;
+        pool.shutdown();
+
+        int count = Math.min(samples.get(), MAX_SAMPLES);
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        System.out.printf("mode=%s clients=%d duration=%.1fs%n", mode, clients, elapsed);
+        System.out.printf("requests=%d throughput=%.1f req/s errors=%d statuses=%s%n",
+                samples.get(), samples.get() / elapsed, errors.get(), statuses);
+        if (count > 0) {
+            System.out.printf("latency ms: p50=%.1f p90=%.1f p99=%.1f max=%.1f%n",
+                    percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99), sorted[count - 1] / 1e6);
+        }
+    }
+
+    private static HttpRequest buildRequest(String url, String mode, int clientId, int n) {
+        boolean write = mode.equals("post") || (mode.equals("mixed") && n % 10 == 0);
+        if (!write) {
+            return HttpRequest.newBuilder(URI.create(url + "?limit=20")).GET().build();
+        }
+        String body = "imagePath=resources/TestImage1.jpg&description=Load+test+" + clientId + "-" + n;
+        return HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.floor(p * sorted.length))] / 1e6;
+    }
+}
@@ -3,8 +3,15 @@
 //Artifact 3: Databases 
 
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
@@ -13,30 +20,232 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.bson.Document;
-import com.google.gson.Gson;
+import org.bson.types.ObjectId;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * Servlet implementation class for managing slides via a web interface.
- * This servlet handles CRUD operations for slides, interacting with MongoDB.
+ * This servlet handles CRUD operations for slides. Reads are served from the
+ * in-memory SlideMirror and writes go through it to the SlideRepository.
+ * Writes run on a SlideRequestExecutor, so waiting on the repository does
+ * not hold a connector thread.
  */
-@WebServlet("/slides")
+@WebServlet(value = "/slides", asyncSupported = true)
 public class SlideManagementServlet extends HttpServlet {
     private static final long serialVersionUID = 1L;
-    private Gson gson = new Gson();
+    private static final int MAX_PAGE_SIZE = 1000;
+    // Byte budget for cached response bodies, overridable with -Dslideshow.response.cache.bytes
+    private static final long RESPONSE_CACHE_BYTES = Long.getLong("slideshow.response.cache.bytes", 16L * 1024 * 1024);
+
+    private final SlideRequestExecutor writeExecutor = SlideRequestExecutor.fromSystemProperties();
+    private final SlideResponseCache responseCache = new SlideResponseCache(RESPONSE_CACHE_BYTES,
+            Boolean.parseBoolean(System.getProperty("slideshow.response.gzip", "true")));
+
+    @Override
+    public void init() throws ServletException {
+        SlideMirror.start();
+        SlideMirror.addSlideListener(responseCache);
+    }
+
+    @Override
+    public void destroy() {
+        SlideMirror.removeSlideListener(responseCache);
+        responseCache.clear();
+        writeExecutor.shutdown();
+    }
 
     /**
-     * Handles GET requests. Retrieves all slides from the database and returns them as JSON.
+     * Handles GET requests. Streams slides from the mirror as a JSON array.
+     * Optional parameters:
+     *   limit  - page size (at most MAX_PAGE_SIZE); without it every slide is returned
+     *   after  - the _id of the last slide of the previous page (keyset pagination)
+     *   afterPosition - the position of that slide. Paging continues from it
+     *            if the slide has been deleted since; without it a deleted
+     *            after slide is answered 410 Gone rather than with an empty page
+     *   fields - comma separated list of fields to return; _id is always included
+     * Slides are written straight from the mirror without copying, so neither
+     * the database nor memory use per request depends on the size of the collection.
+     * Responses carry the mirror's version tag, built from the stored
+     * collection version and the stored slides, as an ETag and must be
+     * revalidated; a request whose If-None-Match or If-Modified-Since shows it
+     * is already up to date gets 304 Not Modified with no body. Encoded bodies
+     * are cached per set of parameters and written straight from memory, gzipped
+     * when the client accepts it.
      */
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
-        List<Document> slides = MongoDBManager.getAllSlides();
-        String jsonSlides = gson.toJson(slides);
-        
+        String after = request.getParameter("after");
+        String afterPositionParam = request.getParameter("afterPosition");
+        String limitParam = request.getParameter("limit");
+        String fieldsParam = request.getParameter("fields");
+
+        int limit = 0;
+        Long afterPosition = null;
+        try {
+            if (afterPositionParam != null && !afterPositionParam.isEmpty()) {
+                afterPosition = Long.parseLong(afterPositionParam);
+            }
+            if (limitParam != null && !limitParam.isEmpty()) {
+                limit = Math.min(Integer.parseInt(limitParam), MAX_PAGE_SIZE);
+                if (limit <= 0) {
+                    response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                    return;
+                }
+            }
+        } catch (NumberFormatException e) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+        if (after != null && !ObjectId.isValid(after)) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+        // The after slide's current position wins; the client's copy is only needed once it is deleted
+        ObjectId afterId = null;
+        if (after != null) {
+            Long current = SlideMirror.getPosition(after);
+            if (current != null) {
+                afterId = new ObjectId(after);
+                afterPosition = current;
+            } else if (afterPosition == null) {
+                response.setStatus(HttpServletResponse.SC_GONE);
+                return;
+            }
+        }
+        Set<String> fields = null;
+        if (fieldsParam != null && !fieldsParam.isEmpty()) {
+            fields = new HashSet<>(Arrays.asList(fieldsParam.split(",")));
+            fields.add("_id");
+        }
+
+        // Read the tag before the slides, so a change made while writing gives the next request a new tag
+        String etag = "\"" + SlideMirror.getVersionTag() + "\"";
+        long lastModified = SlideMirror.getLastModified();
+        response.setHeader("ETag", etag);
+        response.setDateHeader("Last-Modified", lastModified);
+        response.setHeader("Cache-Control", "no-cache");
+        if (notModified(request, etag, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
         response.setContentType("application/json");
         response.setCharacterEncoding("UTF-8");
-        try (PrintWriter out = response.getWriter()) {
-            out.print(jsonSlides);
-            out.flush();
+        response.setHeader("Vary", "Accept-Encoding");
+        // A page after a live slide is keyed by its id, so it is dropped if that slide moves
+        String key = (afterId != null ? afterId.toHexString() : afterPosition) + "|" + limit + "|"
+                + (fields == null ? "" : String.join(",", new TreeSet<>(fields)));
+        SlideResponseCache.Response cached = responseCache.get(key);
+        if (cached != null) {
+            byte[] body = cached.getBody();
+            String acceptEncoding = request.getHeader("Accept-Encoding");
+            if (cached.getGzipped() != null && acceptEncoding != null && acceptEncoding.contains("gzip")) {
+                body = cached.getGzipped();
+                response.setHeader("Content-Encoding", "gzip");
+            }
+            response.setContentLength(body.length);
+            response.getOutputStream().write(body);
+            return;
+        }
+
+        long stamp = responseCache.beginFill();
+        SlideResponseCache.Recorder recorder = responseCache.record(response.getOutputStream());
+        Long lastPosition = null;
+        boolean complete = true;
+        try (JsonWriter json = new JsonWriter(new OutputStreamWriter(recorder, StandardCharsets.UTF_8))) {
+            json.beginArray();
+            int written = 0;
+            for (Document slide : SlideMirror.getSlidesAfter(afterPosition)) {
+                if (limit > 0 && written++ == limit) {
+                    complete = false;
+                    break;
+                }
+                writeSlide(json, slide, fields);
+                lastPosition = SlideRepository.positionOf(slide);
+            }
+            json.endArray();
+        }
+        byte[] body = recorder.toByteArray();
+        if (body != null) {
+            responseCache.put(key, stamp, body, afterId, afterPosition, lastPosition, complete);
+        }
+    }
+
+    /**
+     * Checks the conditional request headers. If-None-Match takes precedence;
+     * If-Modified-Since is only used when it is absent.
+     * @return true if the client's copy is current
+     */
+    private static boolean notModified(HttpServletRequest request, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            for (String tag : ifNoneMatch.split(",")) {
+                tag = tag.trim();
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if (tag.equals("*") || tag.equals(etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        try {
+            long ifModifiedSince = request.getDateHeader("If-Modified-Since");
+            // HTTP dates only have whole seconds
+            return ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Writes a slide as a JSON object, keeping only the requested fields.
+     * Shared with SlideEventBroadcaster and SlideChangesServlet so events and
+     * changes carry slides in the same form.
+     * @param fields the fields to write, or null for every field
+     */
+    static void writeSlide(JsonWriter json, Document slide, Set<String> fields) throws IOException {
+        json.beginObject();
+        for (Map.Entry<String, Object> entry : slide.entrySet()) {
+            if (fields == null || fields.contains(entry.getKey())) {
+                json.name(entry.getKey());
+                writeValue(json, entry.getValue());
+            }
+        }
+        json.endObject();
+    }
+
+    /**
+     * Writes a BSON value as JSON. ObjectIds are written as {"$oid": "..."},
+     * which is the form the admin page reads slide ids from.
+     */
+    private static void writeValue(JsonWriter json, Object value) throws IOException {
+        if (value == null) {
+            json.nullValue();
+        } else if (value instanceof Map) {
+            json.beginObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                json.name(String.valueOf(entry.getKey()));
+                writeValue(json, entry.getValue());
+            }
+            json.endObject();
+        } else if (value instanceof List) {
+            json.beginArray();
+            for (Object item : (List<?>) value) {
+                writeValue(json, item);
+            }
+            json.endArray();
+        } else if (value instanceof ObjectId) {
+            json.beginObject().name("$oid").value(((ObjectId) value).toHexString()).endObject();
+        } else if (value instanceof Number) {
+            json.value((Number) value);
+        } else if (value instanceof Boolean) {
+            json.value((Boolean) value);
+        } else if (value instanceof Date) {
+            json.value(((Date) value).getTime());
+        } else {
+            json.value(value.toString());
         }
     }
 
@@ -49,8 +258,10 @@ public class SlideManagementServlet extends HttpServlet {
         String description = request.getParameter("description");
         
         if (imagePath != null && !imagePath.isEmpty() && description != null && !description.isEmpty()) {
-            MongoDBManager.addSlide(imagePath, description);
-            response.setStatus(HttpServletResponse.SC_CREATED);
+            writeExecutor.execute(request, response, () -> {
+                SlideMirror.addSlide(imagePath, description);
+                return reply -> reply.setStatus(HttpServletResponse.SC_CREATED);
+            });
         } else {
             response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
         }
@@ -58,21 +269,84 @@ public class SlideManagementServlet extends HttpServlet {
 
     /**
      * Handles PUT requests. Updates an existing slide in the database.
+     * A slide's ETag is its rev field. With If-Match (or the rev parameter,
+     * for clients that cannot set headers) the update only applies if the
+     * slide is still at that revision; otherwise the answer is 412
+     * Precondition Failed with the stored slide as the body, so the client
+     * can show it without reloading the deck. A successful update answers
+     * with the new ETag. An unknown slide is 404, or 412 for a conditional request.
      */
     @Override
     protected void doPut(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
         String id = request.getParameter("id");
         String imagePath = request.getParameter("imagePath");
         String description = request.getParameter("description");
+        String ifMatch = request.getHeader("If-Match");
+        if (ifMatch == null) {
+            ifMatch = request.getParameter("rev");
+        }
+
+        Long expectedRev = null;
+        boolean conditional = ifMatch != null && !ifMatch.isEmpty();
+        if (conditional && !ifMatch.trim().equals("*")) {
+            expectedRev = parseRevision(ifMatch);
+            if (expectedRev == null) {
+                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                return;
+            }
+        }
+        Long rev = expectedRev;
         
-        if (id != null && !id.isEmpty() && imagePath != null && !imagePath.isEmpty() && description != null && !description.isEmpty()) {
-            MongoDBManager.updateSlide(id, imagePath, description);
-            response.setStatus(HttpServletResponse.SC_OK);
+        if (id != null && ObjectId.isValid(id) && imagePath != null && !imagePath.isEmpty() && description != null && !description.isEmpty()) {
+            writeExecutor.execute(request, response, () -> {
+                Document updated;
+                try {
+                    updated = SlideMirror.updateSlide(id, imagePath, description, rev);
+                } catch (SlideRepository.RevisionConflictException e) {
+                    Document current = e.getCurrent();
+                    return reply -> {
+                        reply.setStatus(HttpServletResponse.SC_PRECONDITION_FAILED);
+                        reply.setHeader("ETag", "\"" + SlideRepository.revOf(current) + "\"");
+                        reply.setContentType("application/json");
+                        reply.setCharacterEncoding("UTF-8");
+                        try (JsonWriter json = new JsonWriter(new OutputStreamWriter(reply.getOutputStream(), StandardCharsets.UTF_8))) {
+                            writeSlide(json, current, null);
+                        }
+                    };
+                }
+                if (updated == null) {
+                    return reply -> reply.setStatus(conditional ? HttpServletResponse.SC_PRECONDITION_FAILED : HttpServletResponse.SC_NOT_FOUND);
+                }
+                return reply -> {
+                    reply.setHeader("ETag", "\"" + SlideRepository.revOf(updated) + "\"");
+                    reply.setStatus(HttpServletResponse.SC_OK);
+                };
+            });
         } else {
             response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
         }
     }
 
+    /**
+     * Reads a revision from an If-Match value such as "3", W/"3" or 3.
+     * @return the revision, or null if the value is not a single revision
+     */
+    private static Long parseRevision(String value) {
+        String tag = value.trim();
+        if (tag.startsWith("W/")) {
+            tag = tag.substring(2);
+        }
+        if (tag.length() >= 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            tag = tag.substring(1, tag.length() - 1);
+        }
+        try {
+            long rev = Long.parseLong(tag);
+            return rev >= 0 ? rev : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
     /**
      * Handles DELETE requests. Deletes a slide from the database.
      */
@@ -80,9 +354,11 @@ public class SlideManagementServlet extends HttpServlet {
     protected void doDelete(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
         String id = request.getParameter("id");
         
-        if (id != null && !id.isEmpty()) {
-            MongoDBManager.deleteSlide(id);
-            response.setStatus(HttpServletResponse.SC_OK);
+        if (id != null && ObjectId.isValid(id)) {
+            writeExecutor.execute(request, response, () -> {
+                SlideMirror.deleteSlide(id);
+                return reply -> reply.setStatus(HttpServletResponse.SC_OK);
+            });
         } else {
             response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
         }
@@ -0,0 +1,597 @@
+//Daniel Escobedo
+//CS-499 SNHU
+//Artifact 3: Databases 
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class keeps an in-memory mirror of the slides that both the Swing
+ * SlideShow and SlideManagementServlet read from, so reads never go to the
+ * SlideRepository. Writes made through the mirror go to the repository and
+ * are applied locally straight away. When the repository is shared, such as
+ * MongoDB, changes made by other clients are picked up by a background
+ * thread, using the repository's change notifications where it has them and
+ * otherwise polling for slides with a newer updatedAt plus a periodic sweep
+ * of slide ids to find deletions.
+ *
+ * The mirror tracks the change log version it is known to include, for
+ * viewers that reload the deck and then follow the log from there. That
+ * version and a fingerprint of the mirrored slides make up its version tag,
+ * which SlideManagementServlet sends as an ETag so unchanged reads can be
+ * answered with 304 Not Modified.
+ */
+public class SlideMirror {
+    // How often to poll when change streams are not available, overridable with -Dslideshow.mirror.poll.ms
+    private static final long POLL_INTERVAL_MS = Long.getLong("slideshow.mirror.poll.ms", 2000L);
+    // Polls between full id sweeps that detect remote deletions
+    private static final int POLLS_PER_SWEEP = 5;
+
+    // Slides keyed and ordered by position, plus the position of each slide by _id
+    private static final ConcurrentSkipListMap<Long, Document> slides = new ConcurrentSkipListMap<>();
+    private static final ConcurrentHashMap<ObjectId, Long> positions = new ConcurrentHashMap<>();
+    private static final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    private static final List<SlideListener> slideListeners = new CopyOnWriteArrayList<>();
+    // The last list getSlides built, reused until the generation moves on
+    private static volatile Snapshot snapshot = new Snapshot(-1, Collections.emptyList());
+    private static final AtomicLong generation = new AtomicLong();
+    // Held while a slide is stored or removed, so the maps and the fingerprint agree
+    private static final Object writeLock = new Object();
+    // XOR of fingerprintOf over the mirrored slides, see getVersionTag
+    private static volatile long fingerprint;
+    private static volatile long lastModified = System.currentTimeMillis();
+    // The change log version the mirror is known to include, see getVersion
+    private static volatile long version;
+    // The collection version read when the change stream last caught up, only used by the sync thread
+    private static long pendingVersion = -1;
+    // Set when the change stream restarted without its history, only used by the sync thread
+    private static boolean reloadWhenCaughtUp;
+    private static Thread syncThread;
+    private static boolean started;
+    private static SlideRepository repository;
+
+    private SlideMirror() {
+    }
+
+    /**
+     * The slides in position order as of one generation.
+     */
+    private static final class Snapshot {
+        private final long generation;
+        private final List<Document> slides;
+
+        private Snapshot(long generation, List<Document> slides) {
+            this.generation = generation;
+            this.slides = slides;
+        }
+    }
+
+    /**
+     * Told about each slide the mirror stores or removes, as it happens and
+     * on the thread making the change, so caches of what was read from the
+     * mirror can drop exactly the parts a change affects.
+     */
+    public interface SlideListener {
+        /**
+         * @param id the _id of the slide
+         * @param oldPosition the slide's previous position, or null if it is new
+         * @param newPosition the slide's new position, or null if it was removed
+         */
+        void slideChanged(ObjectId id, Long oldPosition, Long newPosition);
+    }
+
+    /**
+     * Sets the repository the mirror loads from and writes to. It must be
+     * open, and be set before the mirror starts; the caller closes it.
+     * @param slideRepository the repository
+     */
+    public static synchronized void setRepository(SlideRepository slideRepository) {
+        if (started) {
+            throw new IllegalStateException("The slide mirror has already started");
+        }
+        repository = slideRepository;
+    }
+
+    /**
+     * Returns the repository the mirror uses. If none was set, the one named
+     * by the system properties is created and opened.
+     * @return the repository
+     */
+    public static synchronized SlideRepository getRepository() {
+        if (repository == null) {
+            SlideRepository created = SlideRepository.fromSystemProperties();
+            try {
+                created.open();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to open the slide repository", e);
+            }
+            repository = created;
+        }
+        return repository;
+    }
+
+    /**
+     * Loads the slides into the mirror and, for a shared repository, starts
+     * the background sync thread. Calling this more than once has no effect.
+     */
+    public static synchronized void start() {
+        if (started) {
+            return;
+        }
+        SlideRepository slideRepository = getRepository();
+        // Versions are taken after their writes land, so every write up to this one is loaded below
+        long loadedVersion = versionOf(slideRepository.getCollectionVersion());
+        slideRepository.forEachSlide(SlideMirror::store);
+        version = loadedVersion;
+        generation.incrementAndGet();
+        Date lastWrite = slideRepository.getCollectionVersion().getDate("updatedAt");
+        if (lastWrite != null) {
+            lastModified = lastWrite.getTime();
+        }
+        started = true;
+
+        if (slideRepository.isShared()) {
+            syncThread = new Thread(SlideMirror::syncLoop, "slide-mirror-sync");
+            syncThread.setDaemon(true);
+            syncThread.start();
+        }
+    }
+
+    /**
+     * Stops the background sync thread.
+     */
+    public static synchronized void stop() {
+        if (syncThread != null) {
+            syncThread.interrupt();
+            syncThread = null;
+        }
+        started = false;
+    }
+
+    /**
+     * Registers a callback run on the sync thread whenever the mirror changes.
+     * @param listener the callback to add
+     */
+    public static void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Registers a listener told about every slide stored or removed.
+     * @param listener the listener to add
+     */
+    public static void addSlideListener(SlideListener listener) {
+        slideListeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener added with addSlideListener.
+     * @param listener the listener to remove
+     */
+    public static void removeSlideListener(SlideListener listener) {
+        slideListeners.remove(listener);
+    }
+
+    /**
+     * Returns the position of a slide.
+     * @param id the ObjectId of the slide
+     * @return the slide's position, or null if there is no such slide
+     */
+    public static Long getPosition(String id) {
+        return positions.get(new ObjectId(id));
+    }
+
+    /**
+     * Returns every slide in position order. The list is an immutable
+     * snapshot, copied on the first call after the mirror changes rather
+     * than on every change.
+     * @return the mirrored slides
+     */
+    public static List<Document> getSlides() {
+        // Read the generation before copying; a change made during the copy moves it on again
+        long current = generation.get();
+        Snapshot last = snapshot;
+        if (last.generation == current) {
+            return last.slides;
+        }
+        List<Document> copy = Collections.unmodifiableList(new ArrayList<>(slides.values()));
+        snapshot = new Snapshot(current, copy);
+        return copy;
+    }
+
+    /**
+     * Returns a tag for the mirrored slides, built from the stored collection
+     * version the mirror includes and a fingerprint of the stored fields of
+     * every slide. The fingerprint moves with each change the mirror applies,
+     * even one made before the version catches up, and nothing in the tag is
+     * local to this process, so servers and restarts holding the same slides
+     * at the same version hand out the same tag.
+     * @return the current version tag
+     */
+    public static String getVersionTag() {
+        return getVersion() + "-" + Long.toHexString(fingerprint);
+    }
+
+    /**
+     * Returns a change log version the mirror is known to include: every
+     * write up to it has been applied, and later ones may have been too.
+     * A viewer that reloads the deck from the mirror follows the change log
+     * on from here. With a shared repository it trails the collection by up
+     * to one sync round; otherwise every write is made through the mirror
+     * and applied as it returns, so it is the collection version.
+     * @return the change log version
+     */
+    public static long getVersion() {
+        SlideRepository slideRepository = getRepository();
+        return slideRepository.isShared() ? version : versionOf(slideRepository.getCollectionVersion());
+    }
+
+    private static long versionOf(Document collectionVersion) {
+        Object value = collectionVersion.get("version");
+        return value instanceof Number ? ((Number) value).longValue() : 0L;
+    }
+
+    /**
+     * Returns when the mirror last changed, or when the collection was last
+     * written before the mirror was loaded.
+     * @return the time of the last change in milliseconds
+     */
+    public static long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Returns the slides after a position, in position order, without copying.
+     * The position does not need to hold a slide, so a page can continue
+     * after a slide that has since been deleted.
+     * @param afterPosition the position of the last slide already seen, or null to start at the beginning
+     * @return a live view of the following slides
+     */
+    public static Iterable<Document> getSlidesAfter(Long afterPosition) {
+        if (afterPosition == null) {
+            return slides.values();
+        }
+        return slides.tailMap(afterPosition, false).values();
+    }
+
+    /**
+     * Looks up a single slide.
+     * @param id the ObjectId of the slide
+     * @return the slide, or null if there is no such slide
+     */
+    public static Document getSlide(String id) {
+        return lookup(new ObjectId(id));
+    }
+
+    /**
+     * Adds a slide to the database and the mirror.
+     * @param imagePath the path to the slide image
+     * @param description the description of the slide
+     * @return the inserted slide
+     */
+    public static Document addSlide(String imagePath, String description) {
+        Document slide = getRepository().addSlide(imagePath, description);
+        apply(slide);
+        return slide;
+    }
+
+    /**
+     * Updates a slide in the repository and the mirror. See
+     * SlideRepository.updateSlide for how the revision is checked. The mirror
+     * takes the stored slide in every case, including a conflict or a slide
+     * that turned out to be deleted, so it is current without a reload.
+     * @param id the ObjectId of the slide to update
+     * @param imagePath the new image path
+     * @param description the new description
+     * @param expectedRev the revision the caller read, or null to update whatever is stored
+     * @return the updated slide, or null if there is no such slide
+     * @throws SlideRepository.RevisionConflictException if the slide is at a different revision
+     */
+    public static Document updateSlide(String id, String imagePath, String description, Long expectedRev) {
+        Document updated;
+        try {
+            updated = getRepository().updateSlide(id, imagePath, description, expectedRev);
+        } catch (SlideRepository.RevisionConflictException e) {
+            apply(e.getCurrent());
+            throw e;
+        }
+        if (updated != null) {
+            apply(updated);
+        } else {
+            remove(new ObjectId(id));
+        }
+        return updated;
+    }
+
+    /**
+     * Deletes a slide from the database and the mirror.
+     * @param id the ObjectId of the slide to delete
+     */
+    public static void deleteSlide(String id) {
+        getRepository().deleteSlide(id);
+        remove(new ObjectId(id));
+    }
+
+    /**
+     * Applies a batch of slide operations to the database and the mirror.
+     * See SlideRepository.bulkWriteSlides for the operation format. The
+     * mirror takes the slides exactly as the repository reports storing them,
+     * so the next poll finds nothing new. Listeners are notified once for
+     * the whole batch.
+     * @param operations the operations to apply, in order
+     * @param batchSize the maximum number of operations sent per round-trip
+     * @param ordered whether to stop at the first failure
+     * @return one result per operation, in input order
+     */
+    public static List<Document> bulkWriteSlides(List<Document> operations, int batchSize, boolean ordered) {
+        List<Document> results = getRepository().bulkWriteSlides(operations, batchSize, ordered);
+        boolean modified = false;
+        for (Document result : results) {
+            if (!result.getBoolean("ok", false)) {
+                continue;
+            }
+            // A write without a stored slide found nothing to update, or was deleted since
+            Document slide = result.get("slide", Document.class);
+            if (slide == null) {
+                modified |= delete(new ObjectId(result.getString("id")));
+            } else if (!slide.equals(lookup(slide.getObjectId("_id")))) {
+                modified |= store(slide);
+            }
+        }
+        if (modified) {
+            changed();
+        }
+        return results;
+    }
+
+    /**
+     * Stores a slide in the mirror and notifies listeners.
+     */
+    private static void apply(Document slide) {
+        if (store(slide)) {
+            changed();
+        }
+    }
+
+    /**
+     * Removes a slide from the mirror and notifies listeners.
+     */
+    private static void remove(ObjectId id) {
+        if (delete(id)) {
+            changed();
+        }
+    }
+
+    /**
+     * Stores a slide under its position, moving it if its position changed.
+     * A copy older than the one already held, such as one a poll or the
+     * change stream read before a local write landed, is ignored.
+     * @return false if the slide has no position or is stale and was skipped
+     */
+    private static boolean store(Document slide) {
+        ObjectId id = slide.getObjectId("_id");
+        Long position = SlideRepository.positionOf(slide);
+        if (position == null) {
+            System.err.println("Skipping slide without a position: " + id);
+            return false;
+        }
+        Long previous;
+        synchronized (writeLock) {
+            Document held = lookup(id);
+            if (held != null && isOlder(slide, held)) {
+                return false;
+            }
+            previous = positions.put(id, position);
+            if (previous != null && !previous.equals(position)) {
+                Document moved = slides.remove(previous);
+                if (moved != null) {
+                    fingerprint ^= fingerprintOf(moved);
+                }
+            }
+            Document replaced = slides.put(position, slide);
+            if (replaced != null) {
+                fingerprint ^= fingerprintOf(replaced);
+            }
+            fingerprint ^= fingerprintOf(slide);
+        }
+        for (SlideListener listener : slideListeners) {
+            listener.slideChanged(id, previous, position);
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether a copy of a slide is older than another copy of it, by
+     * rev, or by updatedAt for slides saved before revisions existed.
+     */
+    private static boolean isOlder(Document slide, Document other) {
+        long rev = SlideRepository.revOf(slide);
+        long otherRev = SlideRepository.revOf(other);
+        if (rev != otherRev) {
+            return rev < otherRev;
+        }
+        Date updatedAt = slide.getDate("updatedAt");
+        Date otherUpdatedAt = other.getDate("updatedAt");
+        return updatedAt != null && otherUpdatedAt != null && updatedAt.before(otherUpdatedAt);
+    }
+
+    /**
+     * Removes a slide without notifying listeners.
+     * @return true if the slide was in the mirror
+     */
+    private static boolean delete(ObjectId id) {
+        Long position;
+        synchronized (writeLock) {
+            position = positions.remove(id);
+            if (position == null) {
+                return false;
+            }
+            Document removed = slides.remove(position);
+            if (removed != null) {
+                fingerprint ^= fingerprintOf(removed);
+            }
+        }
+        for (SlideListener listener : slideListeners) {
+            listener.slideChanged(id, position, null);
+        }
+        return true;
+    }
+
+    /**
+     * Hashes a slide from its stored fields alone, so the same stored slide
+     * hashes the same in every process. The bits are mixed so that XORing
+     * many slides together rarely cancels out.
+     */
+    private static long fingerprintOf(Document slide) {
+        long hash = ((long) slide.getObjectId("_id").hashCode() << 32) ^ slide.hashCode();
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static Document lookup(ObjectId id) {
+        Long position = positions.get(id);
+        return position == null ? null : slides.get(position);
+    }
+
+    private static void changed() {
+        lastModified = System.currentTimeMillis();
+        generation.incrementAndGet();
+        for (Runnable listener : listeners) {
+            listener.run();
+        }
+    }
+
+    /**
+     * Follows the repository's change notifications, falling back to polling
+     * only if it cannot provide them at all. If the notifications break in a
+     * way that may have lost changes, they are started again and the slides
+     * reloaded once the new ones have caught up, so nothing in between is missed.
+     */
+    private static void syncLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                repository.watchChanges(SlideMirror::apply, SlideMirror::remove, SlideMirror::caughtUp);
+                return;
+            } catch (UnsupportedOperationException e) {
+                System.err.println("Polling for slide changes: " + e.getMessage());
+                pollChanges();
+                return;
+            } catch (RuntimeException e) {
+                System.err.println("Restarting slide change notifications: " + e.getMessage());
+                reloadWhenCaughtUp = true;
+            }
+            try {
+                Thread.sleep(POLL_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Reloads every slide, storing those that changed and removing those
+     * no longer in the repository, and notifies listeners once.
+     */
+    private static void reload() {
+        long reachedVersion = versionOf(repository.getCollectionVersion());
+        // Slides added locally while the repository is read may be missing from it, so only these can be removed
+        Set<ObjectId> held = new HashSet<>(positions.keySet());
+        Set<ObjectId> seen = new HashSet<>();
+        AtomicBoolean modified = new AtomicBoolean();
+        repository.forEachSlide(slide -> {
+            seen.add(slide.getObjectId("_id"));
+            if (!slide.equals(lookup(slide.getObjectId("_id"))) && store(slide)) {
+                modified.set(true);
+            }
+        });
+        for (ObjectId id : held) {
+            if (!seen.contains(id) && delete(id)) {
+                modified.set(true);
+            }
+        }
+        version = Math.max(version, reachedVersion);
+        if (modified.get()) {
+            changed();
+        }
+    }
+
+    /**
+     * Called when the change stream has passed on everything so far. Every
+     * write up to the version read last time has now been applied, since the
+     * stream has been read to its end since then.
+     */
+    private static void caughtUp() {
+        if (reloadWhenCaughtUp) {
+            // The stream is open again, so anything missed before it opened is in the reload
+            reload();
+            reloadWhenCaughtUp = false;
+        }
+        if (pendingVersion > version) {
+            version = pendingVersion;
+        }
+        pendingVersion = versionOf(repository.getCollectionVersion());
+    }
+
+    private static void pollChanges() {
+        Date lastPoll = new Date();
+        int polls = 0;
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Thread.sleep(POLL_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                // Look back an extra interval to allow for clock skew between clients
+                Date pollStarted = new Date();
+                Date since = new Date(lastPoll.getTime() - POLL_INTERVAL_MS);
+                boolean sweep = ++polls % POLLS_PER_SWEEP == 0;
+                // Only a sweep also catches deletions, so only a sweep can vouch for a version
+                long reached = sweep ? versionOf(repository.getCollectionVersion()) : -1;
+                // Listeners hear about each poll once, however many slides it changed
+                boolean modified = false;
+                for (Document slide : repository.getSlidesUpdatedSince(since)) {
+                    if (!slide.equals(lookup(slide.getObjectId("_id")))) {
+                        modified |= store(slide);
+                    }
+                }
+                lastPoll = pollStarted;
+
+                if (sweep) {
+                    // As in reload, a slide added locally after this copy is not removed for missing from the ids
+                    Set<ObjectId> held = new HashSet<>(positions.keySet());
+                    Set<ObjectId> ids = repository.getSlideIds();
+                    for (ObjectId id : held) {
+                        if (!ids.contains(id)) {
+                            modified |= delete(id);
+                        }
+                    }
+                    version = Math.max(version, reached);
+                }
+                if (modified) {
+                    changed();
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Failed to poll for slide changes: " + e.getMessage());
+            }
+        }
+    }
+}
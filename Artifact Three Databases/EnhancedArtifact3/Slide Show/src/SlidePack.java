@@ -0,0 +1,191 @@
+//Daniel Escobedo
+//CS-499 SNHU
+//Artifact 3: Databases 
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class reads a packed slide deck: one file, written offline by
+ * SlidePackWriter, holding an index, each slide's image path and
+ * description, and its image already scaled and stored as raw pixels. The
+ * file is mapped into memory once when the pack is opened, so opening costs
+ * the same for five slides or five thousand, and the OS pages slides in only
+ * when they are read. Images need no decoding: a slide's pixels are
+ * bulk-copied from the mapping straight into the image raster.
+ *
+ * Layout (big-endian):
+ *   header  int magic "SLPK", int version, int slide count, int reserved
+ *   index   per slide, 32 bytes: long pixel offset, int width, int height,
+ *           long text offset, int name length, int description length
+ *   text    UTF-8 name followed by UTF-8 description, per slide
+ *   pixels  per slide, width * height ints of 0xRRGGBB, 4-byte aligned
+ */
+public class SlidePack {
+
+    static final int MAGIC = 0x534C504B; // "SLPK"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 16;
+    static final int INDEX_ENTRY_BYTES = 32;
+
+    private final URL location;
+    private final MappedByteBuffer buffer;
+    private final int size;
+    private Map<String, Integer> namesToIndex; // Built on first lookup by name
+
+    private SlidePack(URL location, MappedByteBuffer buffer, int size) {
+        this.location = location;
+        this.buffer = buffer;
+        this.size = size;
+    }
+
+    /**
+     * Opens a pack by mapping the whole file read-only. Only the header is
+     * read here, so the cost does not grow with the number of slides. The
+     * mapping stays valid after the file channel is closed.
+     * @param path The pack file
+     * @return The opened pack
+     * @throws IOException if the file cannot be read or is not a valid pack
+     */
+    public static SlidePack open(Path path) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Slide pack is larger than 2 GB: " + path);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a slide pack: " + path);
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported slide pack version " + buffer.getInt(4) + ": " + path);
+        }
+        int size = buffer.getInt(8);
+        if (size < 0 || HEADER_BYTES + (long) size * INDEX_ENTRY_BYTES > buffer.capacity()) {
+            throw new IOException("Slide pack index is truncated: " + path);
+        }
+        return new SlidePack(path.toUri().toURL(), buffer, size);
+    }
+
+    /**
+     * @return The number of slides in the pack
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the name a slide was packed under, usually its source image path.
+     * @param index The slide's position in the pack
+     * @return The slide's name
+     */
+    public String getName(int index) {
+        return text(textOffset(index), buffer.getInt(entry(index) + 24));
+    }
+
+    /**
+     * Returns a slide's description.
+     * @param index The slide's position in the pack
+     * @return The description text
+     */
+    public String getDescription(int index) {
+        int nameLength = buffer.getInt(entry(index) + 24);
+        return text(textOffset(index) + nameLength, buffer.getInt(entry(index) + 28));
+    }
+
+    public int getWidth(int index) { return buffer.getInt(entry(index) + 8); }
+    public int getHeight(int index) { return buffer.getInt(entry(index) + 12); }
+
+    /**
+     * Reads a slide's image. The pixels are copied from the mapping into the
+     * new image's raster in one bulk transfer, with no decoding.
+     * Time Complexity: O(width * height)
+     * @param index The slide's position in the pack
+     * @return The slide image, at the size it was packed
+     */
+    public BufferedImage readImage(int index) {
+        int width = getWidth(index);
+        int height = getHeight(index);
+        int offset = (int) buffer.getLong(entry(index));
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        buffer.slice(offset, pixels.length * 4).asIntBuffer().get(pixels);
+        return image;
+    }
+
+    /**
+     * Finds a slide by the name it was packed under.
+     * Time Complexity: O(1) average, after an O(n) index on first use
+     * @param name The slide's name
+     * @return The slide's position in the pack, or -1 if it is not packed
+     */
+    public synchronized int indexOf(String name) {
+        if (namesToIndex == null) {
+            namesToIndex = new HashMap<>();
+            for (int i = 0; i < size; i++) {
+                namesToIndex.putIfAbsent(getName(i), i);
+            }
+        }
+        return namesToIndex.getOrDefault(name, -1);
+    }
+
+    /**
+     * Returns a URL that identifies a slide's image in this pack, so packed
+     * images can go through SlideImagePipeline like any other source.
+     * @param index The slide's position in the pack
+     * @return The pack file's URL with the slide index as the fragment
+     */
+    public URL imageUrl(int index) {
+        try {
+            return new URL(location, "#" + index);
+        } catch (MalformedURLException e) {
+            throw new IllegalStateException(e); // A fragment on a file URL is always valid
+        }
+    }
+
+    /**
+     * Returns the slide an image URL from imageUrl refers to.
+     * @param source An image URL
+     * @return The slide's position in the pack, or -1 if the URL is not from this pack
+     */
+    public int indexOf(URL source) {
+        String fragment = source.getRef();
+        if (fragment == null || !location.sameFile(source)) {
+            return -1;
+        }
+        try {
+            int index = Integer.parseInt(fragment);
+            return index >= 0 && index < size ? index : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private int entry(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Slide " + index + " of " + size);
+        }
+        return HEADER_BYTES + index * INDEX_ENTRY_BYTES;
+    }
+
+    private int textOffset(int index) {
+        return (int) buffer.getLong(entry(index) + 16);
+    }
+
+    private String text(int offset, int length) {
+        ByteBuffer bytes = buffer.slice(offset, length);
+        return StandardCharsets.UTF_8.decode(bytes).toString();
+    }
+}
@@ -0,0 +1,185 @@
+//Daniel Escobedo
+//CS-499 SNHU
+//Artifact 3: Databases 
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import javax.imageio.ImageIO;
+import org.bson.Document;
+
+/**
+ * Offline tool that builds a slide pack (see SlidePack) from a deck of images
+ * and descriptions. Each image is decoded and scaled once here, so the slide
+ * show never has to. The pack is written to a temporary file and moved into
+ * place, so a slide show opening it never sees a partly written deck.
+ *
+ * Usage: java SlidePackWriter <output.pack> [manifest] [width] [height]
+ *   The manifest has one slide per line: image path, a tab, then the
+ *   description. Without a manifest the deck stored in the slide repository
+ *   (-Dslideshow.repository, MongoDB by default) is packed.
+ *   Images are scaled to width x height, 800 x 500 by default.
+ * Run the slide show with -Dslideshow.pack=<output.pack> to read packed
+ * images from the pack instead of their files. Slides are matched to packed
+ * images by image path, so rebuild the pack after replacing an image file.
+ */
+public class SlidePackWriter {
+
+    /**
+     * One slide to pack.
+     */
+    static class Entry {
+        final String name;
+        final URL image;
+        final String description;
+
+        Entry(String name, URL image, String description) {
+            this.name = name;
+            this.image = image;
+            this.description = description;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: java SlidePackWriter <output.pack> [manifest] [width] [height]");
+            System.exit(1);
+        }
+        Path output = Paths.get(args[0]);
+        List<Entry> entries = args.length > 1 && !args[1].equals("-") ? readManifest(Paths.get(args[1])) : repositoryDeck();
+        int width = args.length > 2 ? Integer.parseInt(args[2]) : 800;
+        int height = args.length > 3 ? Integer.parseInt(args[3]) : 500;
+
+        long start = System.nanoTime();
+        write(output, entries, width, height);
+        System.out.printf("Packed %d slides at %dx%d into %s (%d bytes) in %d ms%n", entries.size(), width, height,
+                output, Files.size(output), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Reads a manifest of tab-separated image paths and descriptions.
+     * Blank lines and lines starting with # are skipped.
+     */
+    static List<Entry> readManifest(Path manifest) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+            int tab = line.indexOf('\t');
+            String imagePath = tab < 0 ? line : line.substring(0, tab);
+            String description = tab < 0 ? "" : line.substring(tab + 1);
+            entries.add(new Entry(imagePath, Paths.get(imagePath).toUri().toURL(), description));
+        }
+        return entries;
+    }
+
+    /**
+     * The deck currently stored in the slide repository, in slide order. The
+     * repository and its settings come from system properties.
+     */
+    private static List<Entry> repositoryDeck() throws IOException {
+        SlideRepository repository = SlideRepository.fromSystemProperties();
+        repository.open();
+        try {
+            List<Document> slides = new ArrayList<>();
+            repository.forEachSlide(slides::add);
+            List<Entry> entries = new ArrayList<>();
+            for (Document slide : slides) {
+                String imagePath = slide.getString("imagePath");
+                String description = slide.getString("description");
+                entries.add(new Entry(imagePath, Paths.get(imagePath).toUri().toURL(), description != null ? description : ""));
+            }
+            return entries;
+        } finally {
+            repository.close();
+        }
+    }
+
+    /**
+     * Writes a pack, decoding and scaling each image in turn so only one is
+     * held in memory at a time.
+     * @param output The pack file to create or replace
+     * @param entries The slides, in order
+     * @param width The width images are scaled to
+     * @param height The height images are scaled to
+     * @throws IOException if an image cannot be read or the pack cannot be written
+     */
+    static void write(Path output, List<Entry> entries, int width, int height) throws IOException {
+        int count = entries.size();
+        byte[][] names = new byte[count][];
+        byte[][] descriptions = new byte[count][];
+        long textBytes = 0;
+        for (int i = 0; i < count; i++) {
+            names[i] = entries.get(i).name.getBytes(StandardCharsets.UTF_8);
+            descriptions[i] = entries.get(i).description.getBytes(StandardCharsets.UTF_8);
+            textBytes += names[i].length + descriptions[i].length;
+        }
+        long textStart = SlidePack.HEADER_BYTES + (long) count * SlidePack.INDEX_ENTRY_BYTES;
+        long pixelStart = (textStart + textBytes + 3) & ~3L; // Align so pixels can be read as ints
+        long slideBytes = 4L * width * height;
+        if (pixelStart + slideBytes * count > Integer.MAX_VALUE) {
+            throw new IOException("Deck is too large for one pack (2 GB): " + count + " slides at " + width + "x" + height);
+        }
+
+        ByteBuffer head = ByteBuffer.allocate((int) pixelStart);
+        head.putInt(SlidePack.MAGIC).putInt(SlidePack.VERSION).putInt(count).putInt(0);
+        long text = textStart;
+        for (int i = 0; i < count; i++) {
+            head.putLong(pixelStart + slideBytes * i).putInt(width).putInt(height)
+                    .putLong(text).putInt(names[i].length).putInt(descriptions[i].length);
+            text += names[i].length + descriptions[i].length;
+        }
+        for (int i = 0; i < count; i++) {
+            head.put(names[i]).put(descriptions[i]);
+        }
+        head.position(0);
+
+        Path parent = output.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(parent, output.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                writeFully(channel, head);
+                ByteBuffer pixels = ByteBuffer.allocateDirect((int) slideBytes);
+                IntBuffer pixelInts = pixels.asIntBuffer();
+                for (Entry entry : entries) {
+                    BufferedImage image = SlideImagePipeline.scale(read(entry.image), width, height);
+                    pixelInts.clear();
+                    pixelInts.put(((DataBufferInt) image.getRaster().getDataBuffer()).getData());
+                    pixels.clear();
+                    writeFully(channel, pixels);
+                }
+                channel.force(true);
+            }
+            Files.move(temp, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static BufferedImage read(URL source) throws IOException {
+        BufferedImage image = ImageIO.read(source);
+        if (image == null) {
+            throw new IOException("No image decoder for " + source);
+        }
+        return image;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+//Daniel Escobedo
+//CS-499 SNHU
+//Artifact 3: Databases 
+
+import java.awt.BorderLayout;
+import java.awt.CardLayout;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.net.URL;
+import javax.imageio.ImageIO;
+import javax.swing.ImageIcon;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+
+/**
+ * Renders slide changes offscreen into a BufferedImage, with the same panes
+ * and display steps as SlideShow, and reports the p50/p90/p99 transition,
+ * layout and paint times from FrameStats. It needs no display or database,
+ * so slide-change latency can be tracked in CI. Both rendering modes are
+ * measured: building new labels for each slide as the component mode does,
+ * and painting on SlideCanvas.
+ *
+ * Usage: java -Djava.awt.headless=true SlideRenderHarness [frames]
+ * With -Dbench.maxP99Ms=N the exit status is 1 when the p99 transition
+ * time of the mode selected by -Dslideshow.render (default canvas) is over
+ * N milliseconds. The paint times of crossfade animation frames are reported
+ * separately, since those frames are painted between slide changes.
+ */
+public class SlideRenderHarness {
+
+    private static final int WIDTH = 800;
+    private static final int HEIGHT = 600;
+    private static final int SLIDE_WIDTH = 800;
+    private static final int SLIDE_HEIGHT = 500;
+    private static final int SLIDE_COUNT = 5;
+    private static final int WARMUP_FRAMES = 200;
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        int frames = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+
+        FrameStats componentStats = new FrameStats();
+        FrameStats canvasStats = new FrameStats();
+        FrameStats crossfadeStats = new FrameStats();
+        // Swing components are only touched on the event dispatch thread, as in the app
+        SwingUtilities.invokeAndWait(() -> {
+            BufferedImage[] images = new BufferedImage[SLIDE_COUNT];
+            for (int i = 0; i < SLIDE_COUNT; i++) {
+                images[i] = loadSlideImage(i + 1);
+            }
+            renderComponents(new FrameStats(), images, WARMUP_FRAMES);
+            renderComponents(componentStats, images, frames);
+            renderCanvas(new FrameStats(), images, WARMUP_FRAMES);
+            renderCanvas(canvasStats, images, frames);
+            renderCrossfade(new FrameStats(), images, WARMUP_FRAMES);
+            renderCrossfade(crossfadeStats, images, frames);
+        });
+
+        System.out.println(frames + " slide changes rendered offscreen at " + WIDTH + "x" + HEIGHT);
+        System.out.println("components: " + componentStats);
+        System.out.println("canvas: " + canvasStats);
+        System.out.println("crossfade frames: paint " + crossfadeStats.getPaints());
+
+        FrameStats gated = "components".equals(System.getProperty("slideshow.render")) ? componentStats : canvasStats;
+        String maxP99 = System.getProperty("bench.maxP99Ms");
+        if (maxP99 != null && gated.getTransitions().percentile(99) > Double.parseDouble(maxP99)) {
+            System.err.println("p99 transition time is over " + maxP99 + " ms");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Builds the slide show's pane layout offscreen and steps through the
+     * slides with new labels, timing each change until its frame is painted.
+     * @param stats Where the times are recorded
+     * @param slideImages The scaled slide images
+     * @param frames The number of slide changes to render
+     */
+    private static void renderComponents(FrameStats stats, BufferedImage[] slideImages, int frames) {
+        FrameStats.FramePanel root = new FrameStats.FramePanel(new BorderLayout(10, 50), stats);
+        JPanel slidePane = new JPanel(new CardLayout());
+        JPanel textPane = new JPanel(new CardLayout());
+        textPane.setBackground(Color.WHITE);
+        root.add(slidePane, BorderLayout.CENTER);
+        root.add(textPane, BorderLayout.SOUTH);
+        root.setSize(WIDTH, HEIGHT);
+
+        ImageIcon[] images = new ImageIcon[SLIDE_COUNT];
+        for (int i = 0; i < SLIDE_COUNT; i++) {
+            images[i] = new ImageIcon(slideImages[i]);
+        }
+
+        BufferedImage frame = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        for (int i = 0; i < frames; i++) {
+            int slide = i % SLIDE_COUNT;
+            stats.navigationStarted();
+            SlideShow.showComponents(slidePane, textPane, new JLabel(images[slide]), new JLabel(description(slide)));
+            paintFrame(root, frame);
+            stats.navigationPainted();
+        }
+    }
+
+    /**
+     * Steps through the slides on a single SlideCanvas, timing each change
+     * until its frame is painted.
+     * @param stats Where the times are recorded
+     * @param slideImages The scaled slide images
+     * @param frames The number of slide changes to render
+     */
+    private static void renderCanvas(FrameStats stats, BufferedImage[] slideImages, int frames) {
+        FrameStats.FramePanel root = new FrameStats.FramePanel(new BorderLayout(10, 50), stats);
+        SlideCanvas canvas = new SlideCanvas(stats);
+        root.add(canvas, BorderLayout.CENTER);
+        root.setSize(WIDTH, HEIGHT);
+
+        BufferedImage frame = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        for (int i = 0; i < frames; i++) {
+            int slide = i % SLIDE_COUNT;
+            stats.navigationStarted();
+            canvas.showSlide(slide, slideImages[slide], description(slide));
+            paintFrame(root, frame);
+            stats.navigationPainted();
+        }
+    }
+
+    /**
+     * Paints crossfade animation frames on a SlideCanvas, starting a new
+     * transition every 24 frames, as auto-advance would at 60 fps.
+     * @param stats Where the paint times are recorded
+     * @param slideImages The scaled slide images
+     * @param frames The number of animation frames to render
+     */
+    private static void renderCrossfade(FrameStats stats, BufferedImage[] slideImages, int frames) {
+        FrameStats.FramePanel root = new FrameStats.FramePanel(new BorderLayout(10, 50), stats);
+        SlideCanvas canvas = new SlideCanvas(stats);
+        root.add(canvas, BorderLayout.CENTER);
+        root.setSize(WIDTH, HEIGHT);
+        root.layoutNow();
+        // Long enough that every frame is mid-transition
+        canvas.getTransitions().setStyle(SlideTransitions.Style.CROSSFADE, 60_000);
+
+        BufferedImage frame = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        for (int i = 0; i < frames; i++) {
+            if (i % 24 == 0) {
+                int slide = (i / 24) % SLIDE_COUNT;
+                canvas.showSlide(slide, slideImages[slide], description(slide));
+            }
+            paintFrame(root, frame);
+        }
+        canvas.getTransitions().dispose();
+    }
+
+    /**
+     * Lays out and paints the frame. Offscreen the repaint manager does
+     * nothing, so this stands in for its validate and paint pass.
+     */
+    private static void paintFrame(FrameStats.FramePanel root, BufferedImage frame) {
+        root.layoutNow();
+        Graphics2D g = frame.createGraphics();
+        try {
+            root.paint(g);
+        } finally {
+            g.dispose();
+        }
+    }
+
+    private static String description(int slide) {
+        return "Slide " + (slide + 1) + " description";
+    }
+
+    /**
+     * Loads and scales a slide image from the resources, or draws a
+     * placeholder when the resources are not on the classpath.
+     */
+    private static BufferedImage loadSlideImage(int i) {
+        URL source = SlideRenderHarness.class.getResource("/resources/TestImage" + i + ".jpg");
+        if (source != null) {
+            try {
+                BufferedImage image = ImageIO.read(source);
+                if (image != null) {
+                    return SlideImagePipeline.scale(image, SLIDE_WIDTH, SLIDE_HEIGHT);
+                }
+            } catch (IOException e) {
+                System.err.println("Failed to load " + source + ", using a placeholder: " + e.getMessage());
+            }
+        }
+        BufferedImage image = new BufferedImage(SLIDE_WIDTH, SLIDE_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setPaint(new GradientPaint(0, 0, Color.getHSBColor(i / (float) SLIDE_COUNT, 0.6f, 0.9f),
+                    SLIDE_WIDTH, SLIDE_HEIGHT, Color.DARK_GRAY));
+            g.fillRect(0, 0, SLIDE_WIDTH, SLIDE_HEIGHT);
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+}
@@ -0,0 +1,244 @@
+//Daniel Escobedo
+//CS-499 SNHU
+//Artifact 3: Databases 
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+/**
+ * Where the slides are stored. SlideMirror, and through it the Swing
+ * SlideShow and the servlets, reads and writes slides only through this
+ * interface, so the same application runs against MongoDB, against memory
+ * with no database at all, or against a local checksummed log file.
+ *
+ * Slides are Documents with an ObjectId _id, imagePath, description, a
+ * numeric position that orders the deck, a rev that goes up on every update
+ * and an updatedAt date. Every write takes the next collection version and
+ * is recorded in a change log, which getChangesSince reads back.
+ *
+ * Configuration (system properties, or web.xml context parameters where no
+ * system property is set):
+ *   slideshow.repository       mongo, memory or file (default mongo)
+ *   slideshow.repository.file  the file used by the file repository (default slides.db)
+ */
+public interface SlideRepository {
+
+    String[] CONFIG_KEYS = { "slideshow.repository", "slideshow.repository.file" };
+
+    /**
+     * Creates the repository named by the configuration. It still has to be opened.
+     * @param config the slideshow.repository settings, plus the mongo.* settings for MongoDB
+     * @return the repository
+     * @throws IllegalArgumentException if the repository type is not recognised
+     */
+    static SlideRepository create(Properties config) {
+        String type = config.getProperty("slideshow.repository", "mongo");
+        switch (type) {
+            case "mongo":
+                return new MongoSlideRepository(config);
+            case "memory":
+                return new InMemorySlideRepository();
+            case "file":
+                return new FileSlideRepository(Paths.get(config.getProperty("slideshow.repository.file", "slides.db")));
+            default:
+                throw new IllegalArgumentException("Unknown slide repository: " + type);
+        }
+    }
+
+    /**
+     * Creates the repository named by the system properties. It still has to be opened.
+     * @return the repository
+     */
+    static SlideRepository fromSystemProperties() {
+        Properties config = MongoConnectionManager.configFromSystemProperties();
+        for (String key : CONFIG_KEYS) {
+            String value = System.getProperty(key);
+            if (value != null) {
+                config.setProperty(key, value);
+            }
+        }
+        return create(config);
+    }
+
+    /**
+     * Reads a slide's position.
+     * @param slide the slide
+     * @return the slide's position, or null if it has none
+     */
+    static Long positionOf(Document slide) {
+        Object position = slide.get("position");
+        return position instanceof Number ? ((Number) position).longValue() : null;
+    }
+
+    /**
+     * Reads a slide's revision. Slides saved before revisions existed are at 0.
+     * @param slide the slide
+     * @return the slide's revision
+     */
+    static long revOf(Document slide) {
+        Object rev = slide.get("rev");
+        return rev instanceof Number ? ((Number) rev).longValue() : 0L;
+    }
+
+    /**
+     * Connects to or loads the store and prepares it for use.
+     * @throws IOException if the store cannot be read
+     */
+    void open() throws IOException;
+
+    /**
+     * Releases the store. The repository cannot be used afterwards.
+     */
+    void close();
+
+    /**
+     * @return true if other processes can write to the store too, so readers
+     *         that keep a copy need to follow their changes
+     */
+    boolean isShared();
+
+    /**
+     * Passes every slide to the action, in position order, without holding
+     * the whole deck in a list.
+     * @param action called once per slide
+     */
+    void forEachSlide(Consumer<Document> action);
+
+    /**
+     * Reads the collection version.
+     * @return a Document with the version and the updatedAt of the last write;
+     *         version 0 and a null updatedAt if nothing has been written yet
+     */
+    Document getCollectionVersion();
+
+    /**
+     * Adds a new slide at the end of the slide order.
+     * @param imagePath the path to the slide image
+     * @param description the description of the slide
+     * @return the stored slide, including its _id, position and rev
+     */
+    Document addSlide(String imagePath, String description);
+
+    /**
+     * Updates an existing slide, incrementing its rev. When the caller passes
+     * the revision it read, the update only applies if the slide is still at
+     * that revision, so an edit made from a stale copy is rejected instead of
+     * overwriting a newer one.
+     * @param id the ObjectId of the slide to update
+     * @param imagePath the new image path
+     * @param description the new description
+     * @param expectedRev the revision the caller read, or null to update whatever is stored
+     * @return the updated slide, or null if there is no such slide
+     * @throws RevisionConflictException if the slide is at a different revision
+     */
+    Document updateSlide(String id, String imagePath, String description, Long expectedRev);
+
+    /**
+     * Deletes a slide.
+     * @param id the ObjectId of the slide to delete
+     * @return true if the slide existed
+     */
+    boolean deleteSlide(String id);
+
+    /**
+     * Applies a list of slide operations in batches. Each operation is a
+     * Document whose "op" is add, update or delete (add when missing), along
+     * with the id, imagePath and description that operation needs. A failing
+     * item is reported in its own result and does not abort the rest; in
+     * ordered mode the items after the first failure are reported as skipped.
+     * @param operations the operations to apply, in order
+     * @param batchSize the maximum number of operations written at once
+     * @param ordered whether to stop at the first failure
+     * @return one result per operation, in input order, with index, op, ok and id or error fields;
+     *         added slides also report their position, and a successful add or update reports
+     *         the slide as stored in "slide", or no slide if it has since been deleted
+     */
+    List<Document> bulkWriteSlides(List<Document> operations, int batchSize, boolean ordered);
+
+    /**
+     * Retrieves the slides with the given ids.
+     * @param ids the slide ids
+     * @return the slides that still exist, by id
+     */
+    Map<ObjectId, Document> getSlidesByIds(Collection<ObjectId> ids);
+
+    /**
+     * Reads the change log after a version, oldest first.
+     * @param since the last version the client has applied, or 0 for none
+     * @param limit the maximum number of entries to return
+     * @return a Document with the version the client has reached after
+     *         applying the entries, resync true if the entries it needs were
+     *         compacted away and it must reload every slide, more true if
+     *         entries were left out by the limit, and the changes with
+     *         version, op and slideId
+     */
+    Document getChangesSince(long since, int limit);
+
+    /**
+     * Drops change log entries superseded by a newer change to the same
+     * slide, then the oldest entries beyond the retained count. Readers that
+     * needed a dropped entry are told to resync.
+     * @param retain the number of newest entries to keep
+     * @return the number of entries removed
+     */
+    long compactChanges(int retain);
+
+    /**
+     * Retrieves the slides added or updated at or after the given time.
+     * Used to poll a shared store for changes made by other processes.
+     * @param since the time of the previous poll
+     * @return the slides changed since then
+     */
+    List<Document> getSlidesUpdatedSince(Date since);
+
+    /**
+     * Retrieves the _id of every slide.
+     * Used to detect slides deleted from a shared store by other processes.
+     * @return the set of slide ids
+     */
+    Set<ObjectId> getSlideIds();
+
+    /**
+     * Follows changes made to a shared store by other processes, until the
+     * calling thread is interrupted. Failures the store can recover from are
+     * retried without losing changes.
+     * @param stored called with each slide added or updated
+     * @param removed called with the _id of each slide deleted
+     * @param caughtUp called whenever every change made so far has been passed on
+     * @throws UnsupportedOperationException if the store cannot push changes; poll instead
+     * @throws IllegalStateException if changes may have been missed; reload, then call again
+     */
+    void watchChanges(Consumer<Document> stored, Consumer<ObjectId> removed, Runnable caughtUp);
+
+    /**
+     * Thrown when a conditional update finds the slide at a different
+     * revision than the caller read. Carries the stored slide, so the caller
+     * can show or merge it without reloading anything else.
+     */
+    class RevisionConflictException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        private final transient Document current;
+
+        public RevisionConflictException(Document current) {
+            super("Slide " + current.getObjectId("_id") + " is at revision " + revOf(current));
+            this.current = current;
+        }
+
+        /**
+         * @return the slide as it is stored now
+         */
+        public Document getCurrent() {
+            return current;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+//Daniel Escobedo
+//CS-499 SNHU
+//Artifact 3: Databases 
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.bson.Document;
+
+/**
+ * Command-line benchmark that runs the same slide workload against each
+ * SlideRepository backend and prints the time each step took, so the
+ * backends can be compared side by side:
+ *
+ *   java SlideRepositoryBenchmark memory,file,mongo 10000
+ *
+ * Arguments: comma separated backends (default memory,file), slides (default 10000).
+ * Steps: single adds, a bulk add, updates, a full read, paging through the
+ * change log, adds from several threads at once (which the file backend
+ * commits in groups) and, for the file backend, reopening the file. The file backend
+ * writes to a temporary file that is deleted afterwards. The mongo backend
+ * writes to the database named by -Dmongo.database, so point it at a scratch
+ * database; the slides it adds are deleted again at the end.
+ */
+public class SlideRepositoryBenchmark {
+
+    private static final int WRITER_THREADS = 8;
+
+    public static void main(String[] args) throws Exception {
+        String[] backends = (args.length > 0 ? args[0] : "memory,file").split(",");
+        int slides = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+
+        for (String backend : backends) {
+            Path file = backend.equals("file") ? Files.createTempFile("slides", ".db") : null;
+            try {
+                run(backend, file, slides);
+            } finally {
+                if (file != null) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    private static void run(String backend, Path file, int slides) throws Exception {
+        SlideRepository repository = open(backend, file);
+        System.out.println(backend + ", " + slides + " slides:");
+        List<String> ids = new ArrayList<>(slides);
+        try {
+            long since = ((Number) repository.getCollectionVersion().get("version")).longValue();
+
+            long start = System.nanoTime();
+            for (int i = 0; i < slides / 2; i++) {
+                ids.add(repository.addSlide("resources/TestImage1.jpg", "Benchmark slide " + i).getObjectId("_id").toHexString());
+            }
+            report("add", slides / 2, start);
+
+            List<Document> operations = new ArrayList<>();
+            for (int i = slides / 2; i < slides; i++) {
+                operations.add(new Document("op", "add").append("imagePath", "resources/TestImage2.jpg")
+                        .append("description", "Benchmark slide " + i));
+            }
+            start = System.nanoTime();
+            for (Document result : repository.bulkWriteSlides(operations, 1000, false)) {
+                ids.add(result.getString("id"));
+            }
+            report("bulk add", operations.size(), start);
+
+            start = System.nanoTime();
+            for (String id : ids) {
+                repository.updateSlide(id, "resources/TestImage3.jpg", "Updated benchmark slide", null);
+            }
+            report("update", ids.size(), start);
+
+            long[] read = new long[1];
+            start = System.nanoTime();
+            repository.forEachSlide(slide -> read[0]++);
+            report("read all", read[0], start);
+
+            int changes = 0;
+            start = System.nanoTime();
+            for (Document page = repository.getChangesSince(since, 1000); ; page = repository.getChangesSince(since, 1000)) {
+                changes += page.getList("changes", Document.class).size();
+                since = page.getLong("version");
+                if (!page.getBoolean("more")) {
+                    break;
+                }
+            }
+            report("changes", changes, start);
+
+            ExecutorService writers = Executors.newFixedThreadPool(WRITER_THREADS);
+            List<Future<Document>> added = new ArrayList<>(slides / 2);
+            start = System.nanoTime();
+            for (int i = 0; i < slides / 2; i++) {
+                String description = "Parallel benchmark slide " + i;
+                SlideRepository target = repository;
+                added.add(writers.submit(() -> target.addSlide("resources/TestImage4.jpg", description)));
+            }
+            for (Future<Document> slide : added) {
+                ids.add(slide.get().getObjectId("_id").toHexString());
+            }
+            report("par. add", added.size(), start);
+            writers.shutdown();
+            writers.awaitTermination(1, TimeUnit.MINUTES);
+
+            if (file != null) {
+                repository.close();
+                start = System.nanoTime();
+                repository = open(backend, file);
+                report("reopen", ids.size() * 2L, start);
+            }
+        } finally {
+            if (backend.equals("mongo")) {
+                List<Document> deletes = new ArrayList<>();
+                for (String id : ids) {
+                    deletes.add(new Document("op", "delete").append("id", id));
+                }
+                repository.bulkWriteSlides(deletes, 1000, false);
+            }
+            repository.close();
+        }
+    }
+
+    private static SlideRepository open(String backend, Path file) throws IOException {
+        Properties config = MongoConnectionManager.configFromSystemProperties();
+        config.setProperty("slideshow.repository", backend);
+        if (file != null) {
+            config.setProperty("slideshow.repository.file", file.toString());
+        }
+        SlideRepository repository = SlideRepository.create(config);
+        repository.open();
+        return repository;
+    }
+
+    private static void report(String step, long operations, long start) {
+        double ms = (System.nanoTime() - start) / 1e6;
+        System.out.printf("  %-9s %8d ops %10.1f ms %12.0f ops/s%n", step, operations, ms, operations / (ms / 1000));
+    }
+}
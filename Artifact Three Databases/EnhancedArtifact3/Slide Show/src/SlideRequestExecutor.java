@@ -0,0 +1,214 @@
+//Daniel Escobedo
+//CS-499 SNHU
+//Artifact 3: Databases 
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * This class runs the MongoDB work of a servlet request off the Tomcat
+ * connector thread. The request is put into asynchronous mode and the work
+ * runs on this executor, so a slow database round-trip no longer holds one
+ * of the connector's maxThreads and the number of requests in flight is set
+ * here instead. On a JDK with virtual threads each request gets its own
+ * virtual thread; otherwise a fixed pool is used.
+ *
+ * A task does its work and returns a Reply; it never touches the response
+ * itself. The reply and the timeout race to finish the request, and only
+ * the winner writes to the response, so a task that finishes late cannot
+ * write to a response the container has already completed and reused.
+ * A request that times out is answered 503, but its work carries on and a
+ * write may still be applied once the repository answers. Clients that
+ * retry a timed-out POST should check whether the slide was added first.
+ *
+ * Configuration (system properties):
+ *   slideshow.async              false to run requests on the connector thread (default true)
+ *   slideshow.async.threads      pool size when virtual threads are unavailable (default 64)
+ *   slideshow.async.maxInFlight  requests accepted at once before answering 503 (default 1000)
+ *   slideshow.async.timeoutMs    time a request may take before answering 503 (default 30000)
+ *   slideshow.async.bulkTimeoutMs  the same for a bulk import (default 600000)
+ */
+public class SlideRequestExecutor {
+    private final boolean async;
+    private final long timeoutMs;
+    private final Semaphore inFlight;
+    private final ExecutorService executor;
+
+    /**
+     * The work to do for one request. It must not use the response; what to
+     * send is returned as a Reply.
+     */
+    public interface Task {
+        Reply run() throws IOException;
+    }
+
+    /**
+     * Writes the status, headers and any body of a finished request. Only
+     * run if the request has not already been answered with a timeout.
+     */
+    public interface Reply {
+        void write(HttpServletResponse response) throws IOException;
+    }
+
+    // How long a timeout waits for a reply that is already being written
+    private static final long REPLY_WAIT_SECONDS = 10;
+
+    /**
+     * Constructor for SlideRequestExecutor.
+     * @param async whether to run requests asynchronously at all
+     * @param threads the pool size when virtual threads are unavailable
+     * @param maxInFlight the number of requests accepted at once
+     * @param timeoutMs the time a request may take
+     */
+    public SlideRequestExecutor(boolean async, int threads, int maxInFlight, long timeoutMs) {
+        this.async = async;
+        this.timeoutMs = timeoutMs;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.executor = async ? createExecutor(threads) : null;
+    }
+
+    /**
+     * Creates an executor configured from system properties.
+     * @return the executor
+     */
+    public static SlideRequestExecutor fromSystemProperties() {
+        return fromSystemProperties("slideshow.async.timeoutMs", 30000L);
+    }
+
+    /**
+     * Creates an executor configured from system properties, with the
+     * timeout read from its own property.
+     * @param timeoutProperty the system property holding the timeout in milliseconds
+     * @param defaultTimeoutMs the timeout when the property is not set
+     * @return the executor
+     */
+    public static SlideRequestExecutor fromSystemProperties(String timeoutProperty, long defaultTimeoutMs) {
+        return new SlideRequestExecutor(
+                Boolean.parseBoolean(System.getProperty("slideshow.async", "true")),
+                Integer.getInteger("slideshow.async.threads", 64),
+                Integer.getInteger("slideshow.async.maxInFlight", 1000),
+                Long.getLong(timeoutProperty, defaultTimeoutMs));
+    }
+
+    /**
+     * Runs a request's work, asynchronously when enabled and supported by the
+     * servlet. Too many requests in flight, a timeout or an unexpected
+     * failure are answered with 503 or 500.
+     * @param request the servlet request
+     * @param response the servlet response
+     * @param task the work to do
+     */
+    public void execute(HttpServletRequest request, HttpServletResponse response, Task task) throws IOException {
+        if (!async || !request.isAsyncSupported()) {
+            task.run().write(response);
+            return;
+        }
+        if (!inFlight.tryAcquire()) {
+            response.setHeader("Retry-After", "1");
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return;
+        }
+
+        AsyncContext context = request.startAsync();
+        context.setTimeout(timeoutMs);
+        // The reply and the timeout race to finish the request; whichever is first writes and completes it
+        AtomicBoolean finished = new AtomicBoolean();
+        CountDownLatch replied = new CountDownLatch(1);
+        context.addListener(new AsyncListener() {
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                if (finished.compareAndSet(false, true)) {
+                    response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                    context.complete();
+                    return;
+                }
+                // The reply won and is being written; the request must be completed before this returns
+                try {
+                    replied.await(REPLY_WAIT_SECONDS, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            @Override public void onComplete(AsyncEvent event) { }
+            @Override public void onError(AsyncEvent event) { }
+            @Override public void onStartAsync(AsyncEvent event) { }
+        });
+
+        try {
+            executor.execute(() -> {
+                Reply reply;
+                try {
+                    reply = task.run();
+                } catch (Exception e) {
+                    System.err.println("Failed to handle " + request.getMethod() + " " + request.getRequestURI() + ": " + e.getMessage());
+                    reply = failed -> failed.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                } finally {
+                    inFlight.release();
+                }
+                if (!finished.compareAndSet(false, true)) {
+                    System.err.println("Discarding the reply to " + request.getMethod() + " " + request.getRequestURI() + ", which timed out");
+                    return;
+                }
+                try {
+                    reply.write(response);
+                } catch (Exception e) {
+                    System.err.println("Failed to answer " + request.getMethod() + " " + request.getRequestURI() + ": " + e.getMessage());
+                    if (!response.isCommitted()) {
+                        response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                    }
+                } finally {
+                    context.complete();
+                    replied.countDown();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.release();
+            finished.set(true);
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            context.complete();
+        }
+    }
+
+    /**
+     * Stops accepting work and lets running requests finish.
+     */
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Uses a virtual thread per request when the JDK has them, otherwise a
+     * fixed pool of daemon threads. Looked up reflectively so the code still
+     * compiles and runs on JDKs without virtual threads.
+     */
+    private static ExecutorService createExecutor(int threads) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger count = new AtomicInteger();
+            ThreadFactory factory = task -> {
+                Thread thread = new Thread(task, "slide-request-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+            return Executors.newFixedThreadPool(threads, factory);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+//Daniel Escobedo
+//CS-499 SNHU
+//Artifact 3: Databases 
+
+import org.bson.types.ObjectId;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * This class caches the encoded bodies of GET /slides responses, keyed by
+ * their query parameters, so repeated reads are written straight from memory
+ * instead of being serialized again. Bodies are kept as UTF-8 bytes and,
+ * when large enough to be worth it, gzipped as well.
+ *
+ * Each entry remembers the range of positions it covers. It listens to
+ * SlideMirror and drops only the entries a change falls inside: an update or
+ * delete drops the pages holding that slide, and an add drops the pages that
+ * reach the end of the deck. This covers writes from every servlet and from
+ * other clients alike.
+ */
+public class SlideResponseCache implements SlideMirror.SlideListener {
+    // Bodies shorter than this are not worth gzipping
+    private static final int GZIP_MIN_BYTES = 1024;
+
+    private final SlideCache<String, Response> cache;
+    private final boolean gzip;
+    // Bumped before every invalidation, so a fill that raced with one can be discarded
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * A cached response body and the positions it covers.
+     */
+    public static class Response {
+        private final byte[] body;
+        private final byte[] gzipped;
+        private final ObjectId after;
+        private final Long afterPosition;
+        private final Long lastPosition;
+        private final boolean complete;
+
+        Response(byte[] body, byte[] gzipped, ObjectId after, Long afterPosition, Long lastPosition, boolean complete) {
+            this.body = body;
+            this.gzipped = gzipped;
+            this.after = after;
+            this.afterPosition = afterPosition;
+            this.lastPosition = lastPosition;
+            this.complete = complete;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        /**
+         * @return the gzipped body, or null if the body was too small to compress
+         */
+        public byte[] getGzipped() {
+            return gzipped;
+        }
+
+        long weight() {
+            return body.length + (gzipped == null ? 0 : gzipped.length) + 64;
+        }
+
+        /**
+         * Checks whether a slide at the given position would appear in this response.
+         */
+        boolean covers(long position) {
+            return (afterPosition == null || position > afterPosition)
+                    && (complete || (lastPosition != null && position <= lastPosition));
+        }
+    }
+
+    /**
+     * Constructor for SlideResponseCache.
+     * @param maxBytes the byte budget for cached bodies
+     * @param gzip whether to keep a gzipped copy of each body
+     */
+    public SlideResponseCache(long maxBytes, boolean gzip) {
+        this.cache = new SlideCache<>(maxBytes, Response::weight);
+        this.gzip = gzip;
+    }
+
+    /**
+     * Looks up a cached response.
+     * @param key the cache key built from the query parameters
+     * @return the response, or null on a miss
+     */
+    public Response get(String key) {
+        return cache.get(key);
+    }
+
+    /**
+     * Marks the start of rendering a response that will be offered to put.
+     * @return the stamp to pass to put
+     */
+    public long beginFill() {
+        return invalidations.get();
+    }
+
+    /**
+     * Wraps the response stream so the bytes written to it are captured as
+     * well, up to the size of the largest body worth caching.
+     * @param out the response stream
+     * @return the capturing stream
+     */
+    public Recorder record(OutputStream out) {
+        return new Recorder(out, cache.getMaxBytes() / 4);
+    }
+
+    /**
+     * Caches a rendered response. If the mirror changed while it was being
+     * rendered the response may already be stale, so it is dropped again.
+     * @param key the cache key
+     * @param stamp the value beginFill returned before rendering
+     * @param body the encoded body
+     * @param after the _id the page starts after, or null for the first page or a page after a position
+     * @param afterPosition the position the page starts after, or null for the first page
+     * @param lastPosition the position of the last slide written, or null if none were
+     * @param complete whether the page runs to the end of the deck
+     */
+    public void put(String key, long stamp, byte[] body, ObjectId after, Long afterPosition, Long lastPosition, boolean complete) {
+        byte[] gzipped = gzip && body.length >= GZIP_MIN_BYTES ? gzip(body) : null;
+        cache.put(key, new Response(body, gzipped, after, afterPosition, lastPosition, complete));
+        if (invalidations.get() != stamp) {
+            cache.invalidate(key);
+        }
+    }
+
+    @Override
+    public void slideChanged(ObjectId id, Long oldPosition, Long newPosition) {
+        invalidations.incrementAndGet();
+        boolean moved = oldPosition == null || !oldPosition.equals(newPosition);
+        cache.invalidateEntriesIf((key, response) ->
+                (moved && id.equals(response.after))
+                        || (oldPosition != null && response.covers(oldPosition))
+                        || (newPosition != null && response.covers(newPosition)));
+    }
+
+    /**
+     * Removes every cached response.
+     */
+    public void clear() {
+        invalidations.incrementAndGet();
+        cache.clear();
+    }
+
+    @Override
+    public String toString() {
+        return cache.toString();
+    }
+
+    private static byte[] gzip(byte[] body) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4);
+        try (GZIPOutputStream zip = new GZIPOutputStream(out)) {
+            zip.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Passes bytes through to the response while keeping a copy, until the
+     * copy grows past the limit and is given up.
+     */
+    public static class Recorder extends FilterOutputStream {
+        private final long limit;
+        private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+        Recorder(OutputStream out, long limit) {
+            super(out);
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            if (copy != null) {
+                copy.write(b);
+                checkLimit();
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            if (copy != null) {
+                copy.write(b, off, len);
+                checkLimit();
+            }
+        }
+
+        private void checkLimit() {
+            if (copy.size() > limit) {
+                copy = null;
+            }
+        }
+
+        /**
+         * @return the bytes written, or null if there were too many to keep
+         */
+        public byte[] toByteArray() {
+            return copy == null ? null : copy.toByteArray();
+        }
+    }
+}
@@ -29,6 +29,17 @@
  * - Implemented CRUD operations for slides
  * - Added a MongoDB connection manager
  * - Created a web interface for slide management
+ * - Decoded and pre-scaled slide images on a background thread
+ * - Prefetched the neighbours of the current slide on a background pool
+ * - Read slides from an in-memory mirror kept in sync with MongoDB
+ * - Configured the MongoDB connection pool and closed it on shutdown
+ * - Ordered slides by an indexed position field
+ * - Recorded frame times per slide change, with an offscreen render harness
+ * - Painted slides on one persistent canvas instead of swapping labels
+ * - Added crossfade and slide transitions and timed auto-advance
+ * - Read pre-scaled slide images from a memory-mapped slide pack
+ * - Stored slides through a SlideRepository: MongoDB, memory or a local file
+ * - Made the local file a checksummed log with group commit and compaction
  * 
  * Future Considerations:
  * - Implement user authentication for the web interface
@@ -40,6 +51,13 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Paths;
+import java.util.Collections;
 import java.util.List;
 import org.bson.Document;
 
@@ -59,12 +77,49 @@ public class SlideShow extends JFrame {
     private JButton btnDelete;
     private List<Document> slides;
     private int currentIndex;
+    private SlideImagePipeline imagePipeline;
+    private SlidePrefetcher prefetcher;
+    private SlidePack pack; // Pre-scaled images by image path, or null
+    private final FrameStats frameStats = new FrameStats();
+    private SlideCanvas slideCanvas; // Null when rendering with components
+    private SlideTransitions transitions; // Animates slide changes and drives auto-advance
+
+    // Byte budget for decoded images, overridable with -Dslideshow.image.bytes
+    private static final long IMAGE_BUDGET_BYTES = Long.getLong("slideshow.image.bytes", 128L * 1024 * 1024);
+
+    // How slides are shown: "canvas" paints them on one persistent component,
+    // "components" swaps labels in and out; overridable with -Dslideshow.render
+    private static final boolean CANVAS_RENDERING = !"components".equals(System.getProperty("slideshow.render", "canvas"));
+
+    // Transition between slides on the canvas: "crossfade", "slide" or "none",
+    // and its length; overridable with -Dslideshow.transition and -Dslideshow.transition.ms
+    private static final SlideTransitions.Style TRANSITION =
+            SlideTransitions.Style.parse(System.getProperty("slideshow.transition", "crossfade"));
+    private static final int TRANSITION_MS = Integer.getInteger("slideshow.transition.ms", 400);
+
+    // Time each slide is shown before moving on, 0 for manual navigation only;
+    // overridable with -Dslideshow.autoAdvanceMs
+    private static final int AUTO_ADVANCE_MS = Integer.getInteger("slideshow.autoAdvanceMs", 0);
+
+    // Slide pack built by SlidePackWriter, set with -Dslideshow.pack
+    private static final String PACK_PATH = System.getProperty("slideshow.pack");
+
+    // Slides to prefetch in the direction of travel, overridable with -Dslideshow.prefetch.depth
+    private static final int PREFETCH_DEPTH = Integer.getInteger("slideshow.prefetch.depth", 2);
+
+    // Size slide images are scaled to until the slide pane has been laid out
+    private static final int SLIDE_WIDTH = 800;
+    private static final int SLIDE_HEIGHT = 500;
 
     /**
      * Constructor for the SlideShow class.
      * Initializes the UI components.
      */
     public SlideShow() throws HeadlessException {
+        imagePipeline = new SlideImagePipeline(IMAGE_BUDGET_BYTES, 2);
+        pack = openPack();
+        imagePipeline.usePack(pack);
+        prefetcher = new SlidePrefetcher(imagePipeline, index -> toImageUrl(slides.get(index).getString("imagePath")), PREFETCH_DEPTH);
         initComponent();
     }
 
@@ -75,17 +130,29 @@ public class SlideShow extends JFrame {
         setSize(800, 600);
         setLocationRelativeTo(null);
         setTitle("SNHU Travel Slideshow (MongoDB Edition)");
-        getContentPane().setLayout(new BorderLayout(10, 50));
+        setContentPane(new FrameStats.FramePanel(new BorderLayout(10, 50), frameStats));
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 
         slidePane = new JPanel(new CardLayout());
         textPane = new JPanel(new CardLayout());
         buttonPane = new JPanel(new FlowLayout(FlowLayout.CENTER, 20, 10));
+        if (CANVAS_RENDERING) {
+            slideCanvas = new SlideCanvas(frameStats);
+            transitions = slideCanvas.getTransitions();
+            transitions.setStyle(TRANSITION, TRANSITION_MS);
+        } else {
+            transitions = new SlideTransitions(slidePane, null); // Auto-advance only
+        }
+        transitions.setAutoAdvance(AUTO_ADVANCE_MS, this::autoAdvance);
 
-        loadSlidesFromMongoDB();
+        loadSlides();
 
-        getContentPane().add(slidePane, BorderLayout.CENTER);
-        getContentPane().add(textPane, BorderLayout.SOUTH);
+        if (slideCanvas != null) {
+            getContentPane().add(slideCanvas, BorderLayout.CENTER);
+        } else {
+            getContentPane().add(slidePane, BorderLayout.CENTER);
+            getContentPane().add(textPane, BorderLayout.SOUTH);
+        }
 
         initializeButtons();
 
@@ -118,35 +185,228 @@ public class SlideShow extends JFrame {
     }
 
     /**
-     * Loads all slides from MongoDB and displays the first slide.
+     * Starts the in-memory slide mirror on a background thread, so the
+     * window comes up without waiting on the repository, and displays the
+     * first slide once it has loaded. The mirror keeps itself in sync with
+     * the slide repository, so navigation never queries it and, with
+     * MongoDB, changes from other clients show up here.
      */
-    private void loadSlidesFromMongoDB() {
-        slides = MongoDBManager.getAllSlides();
+    private void loadSlides() {
+        slides = Collections.emptyList();
         currentIndex = 0;
-        if (!slides.isEmpty()) {
+        Thread loader = new Thread(() -> {
+            try {
+                SlideMirror.start();
+            } catch (RuntimeException e) {
+                System.err.println("Failed to load slides: " + e.getMessage());
+                return;
+            }
+            SwingUtilities.invokeLater(() -> {
+                SlideMirror.addListener(() -> SwingUtilities.invokeLater(this::refreshSlides));
+                refreshSlides(); // Picks up the loaded slides, and anything changed since
+            });
+        }, "slide-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * Picks up the latest mirror snapshot after a local or remote change,
+     * staying on the current slide if it still exists.
+     */
+    private void refreshSlides() {
+        Document shown = slides.isEmpty() ? null : slides.get(currentIndex);
+        Object currentId = shown == null ? null : shown.get("_id");
+        int shownIndex = currentIndex;
+        slides = SlideMirror.getSlides();
+        prefetcher.cancelAll(); // Positions may have shifted
+
+        int index = Math.min(currentIndex, Math.max(0, slides.size() - 1));
+        for (int i = 0; i < slides.size(); i++) {
+            if (slides.get(i).get("_id").equals(currentId)) {
+                index = i;
+                break;
+            }
+        }
+        currentIndex = index;
+
+        if (slides.isEmpty() && slideCanvas != null) {
+            slideCanvas.showSlide(null, null, null);
+        } else if (slides.isEmpty()) {
+            slidePane.removeAll();
+            textPane.removeAll();
+            slidePane.repaint();
+            textPane.repaint();
+        } else if (index == shownIndex && currentId != null && slides.get(index).get("_id").equals(currentId)) {
+            // Still on the same slide: no transition and the auto-advance countdown keeps running
+            if (!slides.get(index).equals(shown)) {
+                showCurrentSlide(false);
+            } else {
+                prefetcher.navigated(currentIndex, slides.size(), slideWidth(), slideHeight());
+            }
+        } else {
             updateDisplay();
         }
     }
 
     /**
-     * Updates the display with the current slide.
+     * Updates the display with the current slide after navigating to it.
+     * With the slide canvas this is a single repaint with no layout pass.
      */
     private void updateDisplay() {
+        showCurrentSlide(true);
+    }
+
+    /**
+     * Shows the current slide. Navigating to it starts the transition and
+     * restarts the auto-advance countdown; redrawing the same slide after it
+     * was edited does neither.
+     * @param navigated true if the slide shown before was a different one
+     */
+    private void showCurrentSlide(boolean navigated) {
         if (!slides.isEmpty()) {
             Document currentSlide = slides.get(currentIndex);
-            slidePane.removeAll();
-            textPane.removeAll();
+            if (slideCanvas != null) {
+                // A decoded image goes in with the slide, so the transition renders it from the first frame
+                BufferedImage ready = readyImage(currentSlide);
+                if (navigated) {
+                    slideCanvas.showSlide(currentSlide, ready, currentSlide.getString("description"));
+                } else {
+                    slideCanvas.replaceSlide(currentSlide, ready, currentSlide.getString("description"));
+                }
+                if (ready == null) {
+                    showImage(currentSlide, null);
+                }
+            } else {
+                JLabel imageLabel = new JLabel();
+                showImage(currentSlide, imageLabel);
+                JLabel textLabel = new JLabel(currentSlide.getString("description"));
+                showComponents(slidePane, textPane, imageLabel, textLabel);
+            }
 
-            JLabel imageLabel = new JLabel(new ImageIcon(currentSlide.getString("imagePath")));
-            JLabel textLabel = new JLabel(currentSlide.getString("description"));
+            prefetcher.navigated(currentIndex, slides.size(), slideWidth(), slideHeight());
+            if (navigated) {
+                transitions.resetAutoAdvance();
+                frameStats.navigationQueued();
+            }
+        }
+    }
 
-            slidePane.add(imageLabel);
-            textPane.add(textLabel);
+    /**
+     * Replaces the components shown in the slide and text panes and queues
+     * the layout and repaint. Shared with SlideRenderHarness so the offscreen
+     * measurements use the same steps.
+     */
+    static void showComponents(JPanel slidePane, JPanel textPane, Component image, Component text) {
+        slidePane.removeAll();
+        textPane.removeAll();
+        slidePane.add(image);
+        textPane.add(text);
+        slidePane.revalidate();
+        slidePane.repaint();
+        textPane.revalidate();
+        textPane.repaint();
+    }
 
-            slidePane.revalidate();
-            slidePane.repaint();
-            textPane.revalidate();
-            textPane.repaint();
+    /**
+     * Returns the slide's image if the pipeline already has it decoded.
+     * @param slide the slide whose image is wanted
+     * @return the scaled image, or null if it is not ready or the slide has no image
+     */
+    private BufferedImage readyImage(Document slide) {
+        URL source = toImageUrl(slide.getString("imagePath"));
+        return source == null ? null : imagePipeline.getIfReady(source, slideWidth(), slideHeight());
+    }
+
+    /**
+     * Sets the slide image from the image pipeline, decoding it in the
+     * background when it is not ready yet.
+     * @param slide the slide whose image is shown
+     * @param imageLabel the label that displays the image, or null on the slide canvas
+     */
+    private void showImage(Document slide, JLabel imageLabel) {
+        URL source = toImageUrl(slide.getString("imagePath"));
+        if (source == null) {
+            return;
+        }
+        int width = slideWidth();
+        int height = slideHeight();
+
+        BufferedImage image = imagePipeline.getIfReady(source, width, height);
+        if (image != null) {
+            displayImage(slide, imageLabel, image);
+            return;
+        }
+        imagePipeline.load(source, width, height).whenComplete((loaded, error) -> {
+            if (error != null) {
+                System.err.println("Failed to load slide image: " + error.getMessage());
+                return;
+            }
+            SwingUtilities.invokeLater(() -> displayImage(slide, imageLabel, loaded));
+        });
+    }
+
+    /**
+     * Puts a decoded image on screen, unless the user has moved on to
+     * another slide.
+     * @param slide the slide the image belongs to
+     * @param imageLabel the label that displays the image, or null on the slide canvas
+     * @param image the decoded and scaled image
+     */
+    private void displayImage(Document slide, JLabel imageLabel, BufferedImage image) {
+        if (slideCanvas != null) {
+            slideCanvas.setImage(slide, image); // Ignored if another slide is showing
+        } else if (imageLabel.getParent() == slidePane) {
+            imageLabel.setIcon(new ImageIcon(image));
+        }
+    }
+
+    // Size slide images are scaled to, once the slide area has been laid out
+    private int slideWidth() {
+        int width = slideCanvas != null ? slideCanvas.getImageAreaWidth() : slidePane.getWidth();
+        return width > 0 ? width : SLIDE_WIDTH;
+    }
+
+    private int slideHeight() {
+        int height = slideCanvas != null ? slideCanvas.getImageAreaHeight() : slidePane.getHeight();
+        return height > 0 ? height : SLIDE_HEIGHT;
+    }
+
+    /**
+     * Opens the slide pack named by -Dslideshow.pack.
+     * @return the pack, or null if none is set or it cannot be opened
+     */
+    private static SlidePack openPack() {
+        if (PACK_PATH == null) {
+            return null;
+        }
+        try {
+            return SlidePack.open(Paths.get(PACK_PATH));
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Failed to open slide pack " + PACK_PATH + ", reading image files instead: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Converts a stored image path into a URL the image pipeline can read.
+     * Images in the slide pack are read from the pack rather than the file.
+     * @param imagePath the path to the slide image
+     * @return the image URL, or null if the path is not valid
+     */
+    private URL toImageUrl(String imagePath) {
+        if (imagePath == null || imagePath.isEmpty()) {
+            return null;
+        }
+        int packed = pack != null ? pack.indexOf(imagePath) : -1;
+        if (packed >= 0) {
+            return pack.imageUrl(packed);
+        }
+        try {
+            return new File(imagePath).toURI().toURL();
+        } catch (MalformedURLException e) {
+            System.err.println("Invalid image path: " + imagePath);
+            return null;
         }
     }
 
@@ -155,6 +415,7 @@ public class SlideShow extends JFrame {
      */
     private void goPrevious() {
         if (currentIndex > 0) {
+            frameStats.navigationStarted();
             currentIndex--;
             updateDisplay();
         }
@@ -165,45 +426,71 @@ public class SlideShow extends JFrame {
      */
     private void goNext() {
         if (currentIndex < slides.size() - 1) {
+            frameStats.navigationStarted();
             currentIndex++;
             updateDisplay();
         }
     }
 
     /**
-     * Adds a new slide to the database and refreshes the display.
+     * Moves to the next slide when the auto-advance timer fires, starting
+     * over from the first slide after the last.
+     */
+    private void autoAdvance() {
+        if (currentIndex < slides.size() - 1) {
+            goNext();
+        } else if (currentIndex > 0) {
+            frameStats.navigationStarted();
+            currentIndex = 0;
+            updateDisplay();
+        }
+    }
+
+    /**
+     * Adds a new slide to the database. The mirror refreshes the display.
      */
     private void addSlide() {
         String imagePath = JOptionPane.showInputDialog(this, "Enter image path:");
         String description = JOptionPane.showInputDialog(this, "Enter description:");
         if (imagePath != null && !imagePath.isEmpty() && description != null && !description.isEmpty()) {
-            MongoDBManager.addSlide(imagePath, description);
-            loadSlidesFromMongoDB();
+            SlideMirror.addSlide(imagePath, description);
         }
     }
 
     /**
-     * Updates the current slide in the database and refreshes the display.
+     * Updates the current slide in the database. The mirror refreshes the display.
+     * The update only applies if nobody else changed the slide since it was
+     * shown; otherwise their version is shown and the user is told.
      */
     private void updateSlide() {
+        if (slides.isEmpty()) {
+            return; // Still loading, or nothing to update
+        }
+        Document currentSlide = slides.get(currentIndex);
         String imagePath = JOptionPane.showInputDialog(this, "Enter new image path:");
         String description = JOptionPane.showInputDialog(this, "Enter new description:");
         if (imagePath != null && !imagePath.isEmpty() && description != null && !description.isEmpty()) {
-            Document currentSlide = slides.get(currentIndex);
-            MongoDBManager.updateSlide(currentSlide.getObjectId("_id").toString(), imagePath, description);
-            loadSlidesFromMongoDB();
+            try {
+                Document updated = SlideMirror.updateSlide(currentSlide.getObjectId("_id").toString(), imagePath, description,
+                        SlideRepository.revOf(currentSlide));
+                if (updated == null) {
+                    JOptionPane.showMessageDialog(this, "This slide was deleted by another user.", "Slide Not Updated", JOptionPane.WARNING_MESSAGE);
+                }
+            } catch (SlideRepository.RevisionConflictException e) {
+                JOptionPane.showMessageDialog(this, "This slide was changed by another user and now shows their version. Update it again to replace it.",
+                        "Slide Not Updated", JOptionPane.WARNING_MESSAGE);
+            }
         }
     }
 
     /**
-     * Deletes the current slide from the database and refreshes the display.
+     * Deletes the current slide from the database. The mirror refreshes the display.
      */
     private void deleteSlide() {
         int confirm = JOptionPane.showConfirmDialog(this, "Are you sure you want to delete this slide?", "Confirm Delete", JOptionPane.YES_NO_OPTION);
-        if (confirm == JOptionPane.YES_OPTION) {
+        if (confirm == JOptionPane.YES_OPTION && !slides.isEmpty()) {
             Document currentSlide = slides.get(currentIndex);
-            MongoDBManager.deleteSlide(currentSlide.getObjectId("_id").toString());
-            loadSlidesFromMongoDB();
+            SlideMirror.deleteSlide(currentSlide.getObjectId("_id").toString());
         }
     }
 
@@ -211,8 +498,23 @@ public class SlideShow extends JFrame {
      * Main method to launch the application.
      */
     public static void main(String[] args) {
+        // The repository comes from -Dslideshow.repository, and MongoDB settings from -Dmongo.*
+        SlideRepository repository = SlideRepository.fromSystemProperties();
+        try {
+            repository.open();
+        } catch (IOException e) {
+            System.err.println("Failed to open the slide repository: " + e.getMessage());
+            System.exit(1);
+        }
+        SlideMirror.setRepository(repository);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            SlideMirror.stop();
+            repository.close();
+        }, "slideshow-shutdown"));
+
         EventQueue.invokeLater(() -> {
             SlideShow ss = new SlideShow();
+            Runtime.getRuntime().addShutdownHook(new Thread(ss.frameStats::printSummaryIfEnabled, "frame-stats"));
             ss.setVisible(true);
         });
     }
@@ -54,6 +54,14 @@ public class SlideShow extends JFrame {
 	private JButton btnNext;
 	private JLabel lblSlide;
 	private JLabel lblTextArea;
+	
+	//Cards are only built the first time they are shown, and removed again once
+	//they are more than KEEP_DISTANCE slides away so their images can be reclaimed
+	private static final int SLIDE_COUNT = 8;
+	private static final int KEEP_DISTANCE = 1;
+	private JLabel[] slideCards = new JLabel[SLIDE_COUNT + 1];
+	private JLabel[] textCards = new JLabel[SLIDE_COUNT + 1];
+	private int currentCard = 1;
 
 	/**
 	 * Create the application.
@@ -98,15 +106,8 @@ public class SlideShow extends JFrame {
 		textPane.setLayout(cardText);
 		
 
-		//Logic to add each of the slides and text
-		for (int i = 1; i <= 8; i++) {
-			lblSlide = new JLabel();
-			lblTextArea = new JLabel();
-			lblSlide.setText(getResizeIcon(i));
-			lblTextArea.setText(getTextDescription(i));
-			slidePane.add(lblSlide, "card" + i);
-			textPane.add(lblTextArea, "cardText" + i);
-		}
+		//Only the first slide is built up front, the rest are added on first view
+		showCard(currentCard);
 
 		getContentPane().add(slidePane, BorderLayout.CENTER);
 		getContentPane().add(textPane, BorderLayout.SOUTH);
@@ -140,16 +141,55 @@ public class SlideShow extends JFrame {
 	 * Previous Button Functionality
 	 */
 	private void goPrevious() {
-		card.previous(slidePane);
-		cardText.previous(textPane);
+		currentCard = (currentCard == 1) ? SLIDE_COUNT : currentCard - 1;
+		showCard(currentCard);
 	}
 	
 	/**
 	 * Next Button Functionality
 	 */
 	private void goNext() {
-		card.next(slidePane);
-		cardText.next(textPane);
+		currentCard = (currentCard == SLIDE_COUNT) ? 1 : currentCard + 1;
+		showCard(currentCard);
+	}
+
+	/**
+	 * Shows a slide, adding its image and text cards if they are not built,
+	 * and removes the cards of slides that are now far away
+	 */
+	private void showCard(int i) {
+		if (slideCards[i] == null) {
+			lblSlide = new JLabel();
+			lblTextArea = new JLabel();
+			lblSlide.setText(getResizeIcon(i));
+			lblTextArea.setText(getTextDescription(i));
+			slidePane.add(lblSlide, "card" + i);
+			textPane.add(lblTextArea, "cardText" + i);
+			slideCards[i] = lblSlide;
+			textCards[i] = lblTextArea;
+		}
+		card.show(slidePane, "card" + i);
+		cardText.show(textPane, "cardText" + i);
+		releaseDistantCards(i);
+	}
+
+	/**
+	 * Removes the cards of slides more than KEEP_DISTANCE away from slide i,
+	 * counting around the wrap from the last slide to the first. Nothing else
+	 * holds them, so their images can be garbage collected; they are built
+	 * again if the slide is shown later.
+	 */
+	private void releaseDistantCards(int i) {
+		for (int j = 1; j <= SLIDE_COUNT; j++) {
+			int distance = Math.abs(j - i);
+			distance = Math.min(distance, SLIDE_COUNT - distance);
+			if (distance > KEEP_DISTANCE && slideCards[j] != null) {
+				slidePane.remove(slideCards[j]);
+				textPane.remove(textCards[j]);
+				slideCards[j] = null;
+				textCards[j] = null;
+			}
+		}
 	}
 
 	/**
@@ -0,0 +1,68 @@
+/**
+ * File: InMemorySlideRepository.java
+ * Author: Daniel Escobedo
+ * Contact: danielscobedo1122@gmail.com
+ * Date: 10/16/2024
+ * Version: 2.1
+ *
+ * Description: A deck of slides held in memory as parallel lists of image
+ * locations and descriptions. Used for the slide show's built-in deck and
+ * for decks assembled in code, such as by benchmarks.
+ */
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+public class InMemorySlideRepository implements SlideRepository {
+
+    private static final int BUILT_IN_SLIDES = 5;
+
+    private final List<URL> imageSources = new ArrayList<>();
+    private final List<String> descriptions = new ArrayList<>();
+
+    /**
+     * Returns the slide show's built-in deck, read from the classpath resources.
+     * @return The deck
+     * @throws IOException if an image is not on the classpath
+     */
+    public static InMemorySlideRepository builtInDeck() throws IOException {
+        InMemorySlideRepository deck = new InMemorySlideRepository();
+        for (int i = 1; i <= BUILT_IN_SLIDES; i++) {
+            String name = "/resources/TestImage" + i + ".jpg";
+            URL image = InMemorySlideRepository.class.getResource(name);
+            if (image == null) {
+                throw new IOException(name + " is not on the classpath");
+            }
+            deck.addSlide(image, SlideShow.getTextDescription(i));
+        }
+        return deck;
+    }
+
+    /**
+     * Adds a slide at the end of the deck.
+     * Time Complexity: O(1) amortized
+     * @param imageSource The location of the slide's image
+     * @param description The slide's description
+     */
+    public void addSlide(URL imageSource, String description) {
+        imageSources.add(imageSource);
+        descriptions.add(description);
+    }
+
+    @Override
+    public int size() {
+        return imageSources.size();
+    }
+
+    @Override
+    public URL getImageSource(int index) {
+        return imageSources.get(index);
+    }
+
+    @Override
+    public String getDescription(int index) {
+        return descriptions.get(index);
+    }
+}
@@ -0,0 +1,224 @@
+/**
+ * File: SlideBenchmark.java
+ * Author: Daniel Escobedo
+ * Contact: danielscobedo1122@gmail.com
+ * Date: 10/16/2024
+ *
+ * Description: Headless micro-benchmarks for the slide show's data
+ * structures, so the complexity claims in SlideShow.java are backed by
+ * numbers and regressions show up as changes in them. Each benchmark runs
+ * for a fixed time after a warm-up and reports the average nanoseconds per
+ * operation, across deck sizes from 10 to 1,000,000 slides and with
+ * sequential and random access patterns.
+ *
+ * Benchmarks:
+ * - addSlide: appending slides to a new SlideList
+ * - get: SlideList.get, the chunked index used by jump-to-slide
+ * - legacyGetMiddleNode: the binary search over the linked list that the
+ *   chunked index replaced, kept here as a baseline
+ * - findSlideByIndex hit/miss: the cached lookup path with every slide
+ *   cached, and with a cache too small to ever hit
+ * - goNext/goPrevious: walking the list one slide at a time as the
+ *   navigation buttons do, without the Swing repaint
+ *
+ * Usage: java SlideBenchmark [sizes...]
+ *   e.g. java SlideBenchmark 10 1000 100000 1000000
+ * Timing can be tuned with -Dbench.warmupMs and -Dbench.measureMs.
+ */
+
+import java.util.Random;
+import java.util.function.IntUnaryOperator;
+
+public class SlideBenchmark {
+
+    private static final long WARMUP_MS = Long.getLong("bench.warmupMs", 300L);
+    private static final long MEASURE_MS = Long.getLong("bench.measureMs", 1000L);
+    private static final int[] DEFAULT_SIZES = {10, 1_000, 100_000, 1_000_000};
+    // Random access indices are drawn ahead of time so the RNG is not measured
+    private static final int RANDOM_INDICES = 1 << 16;
+
+    // Results are folded into this so the JIT cannot drop the measured work
+    private static volatile long sink;
+
+    /**
+     * One operation under measurement. Returns a value derived from its work.
+     */
+    private interface Operation {
+        long run(int iteration);
+    }
+
+    public static void main(String[] args) {
+        int[] sizes = DEFAULT_SIZES;
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        System.out.printf("%-26s %10s %-10s %14s%n", "benchmark", "size", "pattern", "ns/op");
+        for (int size : sizes) {
+            runSize(size);
+        }
+    }
+
+    /**
+     * Runs every benchmark for one deck size.
+     * @param size The number of slides in the deck
+     */
+    private static void runSize(int size) {
+        SlideList slides = buildList(size);
+        int[] random = randomIndices(size);
+        IntUnaryOperator sequential = i -> i % size;
+        IntUnaryOperator randomOrder = i -> random[i & (RANDOM_INDICES - 1)];
+
+        // Cost per append, amortized over building a whole deck
+        report("addSlide", size, "sequential", measure(i -> buildList(size).getSize()) / size);
+
+        report("get", size, "sequential", measure(i -> slides.get(sequential.applyAsInt(i)).getDescriptionKey()));
+        report("get", size, "random", measure(i -> slides.get(randomOrder.applyAsInt(i)).getDescriptionKey()));
+
+        report("legacyGetMiddleNode", size, "sequential",
+                measure(i -> legacyFind(slides, sequential.applyAsInt(i)).getDescriptionKey()));
+        report("legacyGetMiddleNode", size, "random",
+                measure(i -> legacyFind(slides, randomOrder.applyAsInt(i)).getDescriptionKey()));
+
+        SlideCache<Integer, SlideNode> warmCache = new SlideCache<>(Long.MAX_VALUE, node -> 1);
+        for (int i = 0; i < size; i++) {
+            SlideShow.findSlideByIndex(warmCache, slides, i);
+        }
+        report("findSlideByIndex hit", size, "sequential",
+                measure(i -> SlideShow.findSlideByIndex(warmCache, slides, sequential.applyAsInt(i)).getDescriptionKey()));
+        report("findSlideByIndex hit", size, "random",
+                measure(i -> SlideShow.findSlideByIndex(warmCache, slides, randomOrder.applyAsInt(i)).getDescriptionKey()));
+
+        // Room for a single entry, so consecutive distinct lookups always miss
+        SlideCache<Integer, SlideNode> coldCache = new SlideCache<>(1, node -> 1);
+        report("findSlideByIndex miss", size, "sequential",
+                measure(i -> SlideShow.findSlideByIndex(coldCache, slides, sequential.applyAsInt(i)).getDescriptionKey()));
+        report("findSlideByIndex miss", size, "random",
+                measure(i -> SlideShow.findSlideByIndex(coldCache, slides, randomOrder.applyAsInt(i)).getDescriptionKey()));
+
+        SlideNode[] current = {slides.getHead()};
+        report("goNext", size, "sequential", measure(i -> {
+            SlideNode next = current[0].getNext();
+            current[0] = next != null ? next : slides.getHead(); // Wrap so the walk never stops
+            return current[0].getDescriptionKey();
+        }));
+        current[0] = slides.getTail();
+        report("goPrevious", size, "sequential", measure(i -> {
+            SlideNode prev = current[0].getPrev();
+            current[0] = prev != null ? prev : slides.getTail();
+            return current[0].getDescriptionKey();
+        }));
+    }
+
+    /**
+     * Runs an operation repeatedly for the warm-up time, then for the
+     * measurement time, and returns the average time per operation.
+     * Operations are timed in batches so the clock is not read on every call.
+     * @param operation The operation to measure
+     * @return The average nanoseconds per operation
+     */
+    private static double measure(Operation operation) {
+        run(operation, WARMUP_MS);
+        long[] result = run(operation, MEASURE_MS);
+        return (double) result[0] / result[1];
+    }
+
+    /**
+     * @return {elapsed nanoseconds, operations run}
+     */
+    private static long[] run(Operation operation, long millis) {
+        long deadline = System.nanoTime() + millis * 1_000_000L;
+        long start = System.nanoTime();
+        long operations = 0;
+        long accumulator = 0;
+        int batch = 1;
+        long now;
+        do {
+            for (int i = 0; i < batch; i++) {
+                accumulator += operation.run((int) (operations + i));
+            }
+            operations += batch;
+            if (batch < 4096) {
+                batch <<= 1;
+            }
+            now = System.nanoTime();
+        } while (now < deadline);
+        sink += accumulator;
+        return new long[] {now - start, operations};
+    }
+
+    private static void report(String benchmark, int size, String pattern, double nanosPerOp) {
+        System.out.printf("%-26s %10d %-10s %14.1f%n", benchmark, size, pattern, nanosPerOp);
+    }
+
+    /**
+     * Builds a deck of lightweight slides. Slides never materialize their
+     * labels here, so no Swing components are created.
+     */
+    private static SlideList buildList(int size) {
+        SlideList list = new SlideList();
+        for (int i = 0; i < size; i++) {
+            list.addSlide(new SlideNode(null, i, key -> ""));
+        }
+        return list;
+    }
+
+    private static int[] randomIndices(int size) {
+        Random random = new Random(42);
+        int[] indices = new int[RANDOM_INDICES];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = random.nextInt(size);
+        }
+        return indices;
+    }
+
+    /**
+     * The lookup SlideShow used before the chunked index: a binary search
+     * over the linked list that finds each midpoint by walking from the left
+     * boundary with slow and fast pointers.
+     * Time Complexity: O(n) per lookup, since the walks sum to about n
+     */
+    private static SlideNode legacyFind(SlideList slides, int index) {
+        SlideNode left = slides.getHead();
+        SlideNode right = slides.getTail();
+        int leftIndex = 0;
+        int rightIndex = slides.getSize() - 1;
+
+        while (left != null && right != null && leftIndex <= rightIndex) {
+            if (leftIndex == index) {
+                return left;
+            }
+            if (rightIndex == index) {
+                return right;
+            }
+
+            int midIndex = (leftIndex + rightIndex) / 2;
+            SlideNode mid = getMiddleNode(left, right);
+
+            if (midIndex == index) {
+                return mid;
+            } else if (midIndex < index) {
+                left = mid.getNext();
+                leftIndex = midIndex + 1;
+            } else {
+                right = mid.getPrev();
+                rightIndex = midIndex - 1;
+            }
+        }
+        return null;
+    }
+
+    private static SlideNode getMiddleNode(SlideNode left, SlideNode right) {
+        SlideNode slow = left;
+        SlideNode fast = left;
+
+        while (fast != right && fast.getNext() != right) {
+            slow = slow.getNext();
+            fast = fast.getNext().getNext();
+        }
+        return slow;
+    }
+}
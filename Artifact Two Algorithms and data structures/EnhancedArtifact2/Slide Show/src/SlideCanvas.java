@@ -0,0 +1,177 @@
+/**
+ * File: SlideCanvas.java
+ * Author: Daniel Escobedo
+ * Contact: danielscobedo1122@gmail.com
+ * Date: 10/16/2024
+ * Version: 2.1
+ *
+ * Description: A single persistent component that paints the current slide's
+ * image and description itself. Changing slides swaps the image and text it
+ * holds and repaints, so no components are added or removed and no layout
+ * pass runs. Descriptions are laid out once into an HTML view and the most
+ * recently used views are kept for reuse. Slide changes can be animated
+ * through the canvas's SlideTransitions.
+ */
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.swing.JComponent;
+import javax.swing.plaf.basic.BasicHTML;
+import javax.swing.text.View;
+
+public class SlideCanvas extends JComponent {
+
+    private static final long serialVersionUID = 1L;
+
+    // Height of the description area below the image
+    private static final int TEXT_HEIGHT = 90;
+    private static final int TEXT_INSET = 10;
+    private static final int MAX_CACHED_VIEWS = 32;
+
+    private final FrameStats stats;
+    private final SlideTransitions transitions;
+    private final Map<String, View> textViews = new LinkedHashMap<String, View>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, View> eldest) {
+            return size() > MAX_CACHED_VIEWS;
+        }
+    };
+    private Object slideKey;
+    private BufferedImage image;
+    private View textView;
+    // The slide being replaced, kept while a transition may need to render it again
+    private BufferedImage previousImage;
+    private View previousTextView;
+
+    /**
+     * Constructor for SlideCanvas.
+     * @param stats Where paint times are recorded
+     */
+    public SlideCanvas(FrameStats stats) {
+        this.stats = stats;
+        this.transitions = new SlideTransitions(this, (g, incoming) -> paintSlide(g,
+                incoming ? image : previousImage, incoming ? textView : previousTextView));
+        setOpaque(true);
+        setBackground(Color.WHITE);
+        setPreferredSize(new Dimension(800, 500 + TEXT_HEIGHT));
+    }
+
+    /**
+     * @return The transitions used for slide changes on this canvas
+     */
+    public SlideTransitions getTransitions() {
+        return transitions;
+    }
+
+    /**
+     * Shows a slide, with the configured transition if another slide was
+     * showing. The image may be null while it is still loading.
+     * Time Complexity: O(1) when the description's view is cached
+     * @param key Identifies the slide, so a late image for another slide is ignored
+     * @param image The slide image, already scaled to the image area, or null
+     * @param text The description, as plain text or HTML
+     */
+    public void showSlide(Object key, BufferedImage image, String text) {
+        boolean hadSlide = slideKey != null;
+        previousImage = this.image;
+        previousTextView = textView;
+        slideKey = key;
+        this.image = image;
+        textView = text == null ? null : textView(text);
+        if (!hadSlide || key == null || !transitions.start()) {
+            transitions.cancel();
+            previousImage = null;
+            previousTextView = null;
+        }
+        repaint();
+    }
+
+    /**
+     * Sets the image of the slide being shown, repainting only the image area.
+     * @param key The slide the image belongs to; ignored if another slide is showing
+     * @param image The slide image, already scaled to the image area
+     */
+    public void setImage(Object key, BufferedImage image) {
+        if (key != slideKey) {
+            return;
+        }
+        this.image = image;
+        if (transitions.isRunning()) {
+            transitions.incomingChanged(); // The next frame picks it up
+        } else {
+            repaint(0, 0, getWidth(), getImageAreaHeight());
+        }
+    }
+
+    /**
+     * @return The width available to the slide image, or 0 before layout
+     */
+    public int getImageAreaWidth() {
+        return getWidth();
+    }
+
+    /**
+     * @return The height available to the slide image, or 0 before layout
+     */
+    public int getImageAreaHeight() {
+        return Math.max(0, getHeight() - TEXT_HEIGHT);
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        long start = stats.paintStarted();
+        try {
+            if (!transitions.paint(g)) {
+                g.setColor(getBackground());
+                g.fillRect(0, 0, getWidth(), getHeight());
+                paintSlide((Graphics2D) g, image, textView);
+            }
+        } finally {
+            stats.paintFinished(start);
+        }
+    }
+
+    /**
+     * Paints a slide's image and description over the background.
+     */
+    private void paintSlide(Graphics2D g, BufferedImage image, View textView) {
+        int imageAreaHeight = getImageAreaHeight();
+        if (image != null) {
+            // Centred at its own size; the pipeline scales images to the image area
+            int x = (getWidth() - image.getWidth()) / 2;
+            int y = (imageAreaHeight - image.getHeight()) / 2;
+            g.drawImage(image, x, y, null);
+        }
+        if (textView != null) {
+            Rectangle area = new Rectangle(TEXT_INSET, imageAreaHeight + TEXT_INSET,
+                    Math.max(0, getWidth() - 2 * TEXT_INSET), TEXT_HEIGHT - 2 * TEXT_INSET);
+            textView.setSize(area.width, area.height);
+            g.setColor(getForeground());
+            textView.paint(g, area);
+        }
+    }
+
+    /**
+     * Returns the laid-out view for a description, creating it on first use.
+     * Plain text is escaped and wrapped in HTML so it line-wraps the same way.
+     */
+    private View textView(String text) {
+        View view = textViews.get(text);
+        if (view == null) {
+            String html = BasicHTML.isHTMLString(text) ? text : "<html>" + escape(text) + "</html>";
+            view = BasicHTML.createHTMLView(this, html);
+            textViews.put(text, view);
+        }
+        return view;
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+}
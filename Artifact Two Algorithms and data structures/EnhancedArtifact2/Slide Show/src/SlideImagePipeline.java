@@ -0,0 +1,212 @@
+/**
+ * File: SlideImagePipeline.java
+ * Author: Daniel Escobedo
+ * Contact: danielscobedo1122@gmail.com
+ * Date: 10/16/2024
+ * Version: 2.1
+ *
+ * Description: Decodes slide images once on a background thread, scales them
+ * to the display size with a high-quality multi-step pass, and keeps the
+ * resulting BufferedImages in a bounded SlideCache. The Event Dispatch Thread
+ * only ever swaps an image that has already been decoded and scaled.
+ * Images from a slide pack are read from its mapping instead of decoded.
+ */
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.imageio.ImageIO;
+
+public class SlideImagePipeline {
+
+    private final SlideCache<String, BufferedImage> imageCache;
+    private final ConcurrentHashMap<String, CompletableFuture<BufferedImage>> inFlight = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Future<?>> tasks = new ConcurrentHashMap<>();
+    private final ExecutorService decoder;
+    private volatile SlidePack pack; // Source of pre-scaled images, or null
+
+    /**
+     * Constructor for SlideImagePipeline.
+     * @param maxBytes The byte budget for decoded, scaled images
+     * @param threads The number of background decoding threads
+     */
+    public SlideImagePipeline(long maxBytes, int threads) {
+        this.imageCache = new SlideCache<>(maxBytes, image -> 4L * image.getWidth() * image.getHeight());
+        AtomicInteger count = new AtomicInteger();
+        this.decoder = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "slide-decoder-" + count.incrementAndGet());
+            t.setDaemon(true);
+            t.setPriority(Thread.NORM_PRIORITY - 1); // Stay out of the way of the EDT
+            return t;
+        });
+    }
+
+    /**
+     * Reads images whose URLs come from the given pack from the pack itself,
+     * with no decoding.
+     * @param pack The slide pack, or null to stop using one
+     */
+    public void usePack(SlidePack pack) {
+        this.pack = pack;
+    }
+
+    /**
+     * Returns a scaled image if it has already been decoded.
+     * Time Complexity: O(1)
+     * @param source The location of the source image
+     * @param width The target width in pixels
+     * @param height The target height in pixels
+     * @return The scaled image, or null if it is not ready yet
+     */
+    public BufferedImage getIfReady(URL source, int width, int height) {
+        return imageCache.get(key(source, width, height));
+    }
+
+    /**
+     * Decodes and scales an image on a background thread. Concurrent requests
+     * for the same image and size share a single decode.
+     * @param source The location of the source image
+     * @param width The target width in pixels
+     * @param height The target height in pixels
+     * @return A future completing with the scaled image
+     */
+    public CompletableFuture<BufferedImage> load(URL source, int width, int height) {
+        String key = key(source, width, height);
+        BufferedImage cached = imageCache.get(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        CompletableFuture<BufferedImage> future = new CompletableFuture<>();
+        CompletableFuture<BufferedImage> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            return existing;
+        }
+        Future<?> task = decoder.submit(() -> {
+            try {
+                BufferedImage decoded = decode(source);
+                // Packed images are usually stored at the display size already
+                BufferedImage scaled = decoded.getWidth() == width && decoded.getHeight() == height
+                        ? decoded : scale(decoded, width, height);
+                imageCache.put(key, scaled);
+                future.complete(scaled);
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        });
+        // Cleanup is registered after the task is in the map, so a decode
+        // that finishes first still removes its own entry and no newer one
+        tasks.put(key, task);
+        future.whenComplete((image, error) -> {
+            inFlight.remove(key, future);
+            tasks.remove(key, task);
+        });
+        return future;
+    }
+
+    /**
+     * Cancels a pending decode. A decode that has not started yet is dropped
+     * from the queue, and anyone waiting on it sees a cancelled future.
+     * @param source The location of the source image
+     * @param width The target width in pixels
+     * @param height The target height in pixels
+     */
+    public void cancel(URL source, int width, int height) {
+        String key = key(source, width, height);
+        Future<?> task = tasks.remove(key);
+        if (task != null) {
+            task.cancel(false);
+        }
+        CompletableFuture<BufferedImage> future = inFlight.remove(key);
+        if (future != null) {
+            future.cancel(false);
+        }
+    }
+
+    /**
+     * Returns the decoded image cache so its counters can be read.
+     * @return The image cache
+     */
+    public SlideCache<String, BufferedImage> getImageCache() {
+        return imageCache;
+    }
+
+    /**
+     * Stops the background decoding threads.
+     */
+    public void shutdown() {
+        decoder.shutdownNow();
+    }
+
+    /**
+     * Reads and decodes an image, or reads it from the slide pack.
+     * @param source The location of the image
+     * @return The decoded image
+     */
+    private BufferedImage decode(URL source) {
+        SlidePack current = pack;
+        int index = current != null ? current.indexOf(source) : -1;
+        if (index >= 0) {
+            return current.readImage(index);
+        }
+        try {
+            BufferedImage image = ImageIO.read(source);
+            if (image == null) {
+                throw new IOException("No image decoder for " + source);
+            }
+            return image;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to decode slide image " + source, e);
+        }
+    }
+
+    /**
+     * Scales an image to the target size. Large reductions are done as a
+     * series of halving bilinear steps followed by a final bicubic pass,
+     * which avoids the aliasing of a single-step downscale.
+     * @param source The decoded image
+     * @param width The target width in pixels
+     * @param height The target height in pixels
+     * @return The scaled image
+     */
+    static BufferedImage scale(BufferedImage source, int width, int height) {
+        BufferedImage current = source;
+        int w = source.getWidth();
+        int h = source.getHeight();
+
+        while (w / 2 >= width && h / 2 >= height) {
+            w /= 2;
+            h /= 2;
+            current = draw(current, w, h, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        }
+        return draw(current, width, height, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+    }
+
+    /**
+     * Draws an image into a new opaque image of the given size.
+     */
+    private static BufferedImage draw(BufferedImage source, int width, int height, Object interpolation) {
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    private static String key(URL source, int width, int height) {
+        return source + "@" + width + "x" + height;
+    }
+}
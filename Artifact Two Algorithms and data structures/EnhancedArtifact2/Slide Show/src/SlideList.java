@@ -0,0 +1,259 @@
+/**
+ * File: SlideList.java
+ * Author: Daniel Escobedo
+ * Contact: danielscobedo1122@gmail.com
+ * Date: 10/16/2024
+ * Version: 2.1
+ *
+ * Description: The doubly linked list of slides, with a chunked array index
+ * for O(log n) access by position, and the listener it notifies when slides
+ * are inserted or removed.
+ */
+
+import java.util.ArrayList;
+
+/**
+ * SlideList class implements a doubly linked list to manage the slides.
+ * The links give O(1) next/previous navigation, while a chunked array index
+ * laid over the nodes gives O(log n) random access by position. Inserting or
+ * removing in the middle only touches one chunk plus the chunk offsets, so
+ * the nodes never need a full reindex.
+ */
+class SlideList {
+    // Chunks are split once they grow past twice this size
+    private static final int CHUNK_SIZE = 256;
+
+    private SlideNode head;
+    private SlideNode tail;
+    private int size;
+    private final ArrayList<Chunk> chunks = new ArrayList<>();
+    private final ArrayList<SlideListListener> listeners = new ArrayList<>();
+
+    /**
+     * A contiguous run of slides in the index, along with the list position
+     * of its first slide.
+     */
+    private static class Chunk {
+        int start;
+        final ArrayList<SlideNode> nodes;
+
+        Chunk(int start, ArrayList<SlideNode> nodes) {
+            this.start = start;
+            this.nodes = nodes;
+        }
+    }
+
+    /**
+     * Returns the first slide in the list.
+     * @return The head SlideNode
+     */
+    public SlideNode getHead() { return head; }
+
+    /**
+     * Returns the last slide in the list.
+     * @return The tail SlideNode
+     */
+    public SlideNode getTail() { return tail; }
+
+    /**
+     * Returns the number of slides in the list.
+     * @return The size of the slide list
+     */
+    public int getSize() { return size; }
+
+    /**
+     * Registers a listener to be told when slide positions change.
+     * Appending a slide does not move existing slides, so only inserts and
+     * removals are reported.
+     * @param listener The listener to add
+     */
+    public void addListener(SlideListListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Returns the slide at the given position.
+     * Time Complexity: O(log(n / CHUNK_SIZE)) - binary search over chunk offsets
+     * Space Complexity: O(1) - uses fixed amount of memory
+     * @param index The position of the slide (0-based)
+     * @return The SlideNode at the given position, or null if out of range
+     */
+    public SlideNode get(int index) {
+        if (index < 0 || index >= size) {
+            return null;
+        }
+        Chunk chunk = chunks.get(findChunk(index));
+        return chunk.nodes.get(index - chunk.start);
+    }
+
+    /**
+     * Adds a new slide to the end of the list.
+     * Time Complexity: O(1) - constant time operation
+     * Space Complexity: O(1) - uses fixed amount of memory
+     * @param node The SlideNode to be added
+     */
+    public void addSlide(SlideNode node) {
+        if (head == null) {
+            head = tail = node;
+        } else {
+            tail.setNext(node);
+            node.setPrev(tail);
+            tail = node;
+        }
+
+        Chunk last = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+        if (last == null || last.nodes.size() >= CHUNK_SIZE) {
+            last = new Chunk(size, new ArrayList<>(CHUNK_SIZE));
+            chunks.add(last);
+        }
+        last.nodes.add(node);
+        size++;
+    }
+
+    /**
+     * Inserts a slide so that it ends up at the given position.
+     * Time Complexity: O(CHUNK_SIZE + n / CHUNK_SIZE)
+     * Space Complexity: O(1) amortized
+     * @param index The position to insert at (0-based, size appends)
+     * @param node The SlideNode to be inserted
+     * @throws IndexOutOfBoundsException if the index is outside 0..size
+     */
+    public void insertSlide(int index, SlideNode node) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Slide index " + index + " out of range for size " + size);
+        }
+        if (index == size) {
+            addSlide(node);
+            return;
+        }
+
+        // Link the node in front of the slide currently at this position
+        SlideNode successor = get(index);
+        SlideNode predecessor = successor.getPrev();
+        node.setPrev(predecessor);
+        node.setNext(successor);
+        successor.setPrev(node);
+        if (predecessor == null) {
+            head = node;
+        } else {
+            predecessor.setNext(node);
+        }
+
+        int chunkIndex = findChunk(index);
+        Chunk chunk = chunks.get(chunkIndex);
+        chunk.nodes.add(index - chunk.start, node);
+        shiftStarts(chunkIndex + 1, 1);
+        size++;
+
+        if (chunk.nodes.size() > 2 * CHUNK_SIZE) {
+            splitChunk(chunkIndex);
+        }
+        fireSlidesChanged(index);
+    }
+
+    /**
+     * Removes the slide at the given position.
+     * Time Complexity: O(CHUNK_SIZE + n / CHUNK_SIZE)
+     * Space Complexity: O(1) - uses fixed amount of memory
+     * @param index The position of the slide to remove (0-based)
+     * @return The removed SlideNode, or null if out of range
+     */
+    public SlideNode removeSlide(int index) {
+        if (index < 0 || index >= size) {
+            return null;
+        }
+
+        int chunkIndex = findChunk(index);
+        Chunk chunk = chunks.get(chunkIndex);
+        SlideNode node = chunk.nodes.remove(index - chunk.start);
+        if (chunk.nodes.isEmpty()) {
+            chunks.remove(chunkIndex);
+        } else {
+            chunkIndex++;
+        }
+        shiftStarts(chunkIndex, -1);
+        size--;
+
+        // Unlink the node from its neighbours
+        SlideNode predecessor = node.getPrev();
+        SlideNode successor = node.getNext();
+        if (predecessor == null) {
+            head = successor;
+        } else {
+            predecessor.setNext(successor);
+        }
+        if (successor == null) {
+            tail = predecessor;
+        } else {
+            successor.setPrev(predecessor);
+        }
+        node.setPrev(null);
+        node.setNext(null);
+        node.release(); // A removed slide no longer needs its components
+        fireSlidesChanged(index);
+        return node;
+    }
+
+    /**
+     * Notifies listeners that slides from the given position onwards moved.
+     * @param fromIndex The first affected position
+     */
+    private void fireSlidesChanged(int fromIndex) {
+        for (SlideListListener listener : listeners) {
+            listener.slidesChanged(fromIndex);
+        }
+    }
+
+    /**
+     * Binary searches the chunk offsets for the chunk holding the given position.
+     * @param index A position known to be within range
+     * @return The index of the chunk that contains the position
+     */
+    private int findChunk(int index) {
+        int low = 0;
+        int high = chunks.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (chunks.get(mid).start <= index) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Adjusts the starting position of every chunk from the given chunk onwards.
+     * @param fromChunk The first chunk to adjust
+     * @param delta The amount to add to each starting position
+     */
+    private void shiftStarts(int fromChunk, int delta) {
+        for (int i = fromChunk; i < chunks.size(); i++) {
+            chunks.get(i).start += delta;
+        }
+    }
+
+    /**
+     * Splits an oversized chunk into two halves so inserts stay cheap.
+     * @param chunkIndex The chunk to split
+     */
+    private void splitChunk(int chunkIndex) {
+        Chunk chunk = chunks.get(chunkIndex);
+        int half = chunk.nodes.size() / 2;
+        ArrayList<SlideNode> upper = new ArrayList<>(chunk.nodes.subList(half, chunk.nodes.size()));
+        chunk.nodes.subList(half, chunk.nodes.size()).clear();
+        chunks.add(chunkIndex + 1, new Chunk(chunk.start + half, upper));
+    }
+}
+
+/**
+ * Listener notified when slides are inserted into or removed from a SlideList.
+ */
+interface SlideListListener {
+    /**
+     * Called after the list changes structurally.
+     * @param fromIndex The first position whose slide may have changed
+     */
+    void slidesChanged(int fromIndex);
+}
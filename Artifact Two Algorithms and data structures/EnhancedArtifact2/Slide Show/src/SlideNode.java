@@ -0,0 +1,104 @@
+/**
+ * File: SlideNode.java
+ * Author: Daniel Escobedo
+ * Contact: danielscobedo1122@gmail.com
+ * Date: 10/16/2024
+ * Version: 2.1
+ *
+ * Description: A single slide in the presentation, linked to the slides before
+ * and after it, with its Swing labels built lazily.
+ */
+
+import java.lang.ref.SoftReference;
+import java.net.URL;
+import java.util.function.IntFunction;
+import javax.swing.JLabel;
+
+/**
+ * SlideNode class represents a single slide in the presentation.
+ * It stores only the slide's image location and description key, along with
+ * references to the previous and next slides. The image and text labels are
+ * built the first time they are needed and held through soft references, so
+ * the garbage collector can reclaim them under memory pressure; they are
+ * simply rebuilt on the next display.
+ */
+class SlideNode {
+    private final URL imageSource;
+    private final int descriptionKey;
+    private final IntFunction<String> descriptions;
+    private SoftReference<JLabel> imageLabel;
+    private SoftReference<JLabel> textLabel;
+    private SlideNode prev;
+    private SlideNode next;
+
+    /**
+     * Constructor for SlideNode.
+     * @param imageSource The location of the slide's image
+     * @param descriptionKey The key of the slide's description text
+     * @param descriptions Looks up description text by key
+     */
+    public SlideNode(URL imageSource, int descriptionKey, IntFunction<String> descriptions) {
+        this.imageSource = imageSource;
+        this.descriptionKey = descriptionKey;
+        this.descriptions = descriptions;
+    }
+
+    /**
+     * Returns the label that displays the slide's image, creating it if needed.
+     * @return The image JLabel
+     */
+    public JLabel getImageLabel() {
+        JLabel label = imageLabel == null ? null : imageLabel.get();
+        if (label == null) {
+            label = new JLabel();
+            imageLabel = new SoftReference<>(label);
+        }
+        return label;
+    }
+
+    /**
+     * Returns the label that displays the slide's description, creating it if needed.
+     * @return The description JLabel
+     */
+    public JLabel getTextLabel() {
+        JLabel label = textLabel == null ? null : textLabel.get();
+        if (label == null) {
+            label = new JLabel(descriptions.apply(descriptionKey));
+            textLabel = new SoftReference<>(label);
+        }
+        return label;
+    }
+
+    /**
+     * Returns the slide's description without building a label for it.
+     * @return The description text
+     */
+    public String getDescription() {
+        return descriptions.apply(descriptionKey);
+    }
+
+    /**
+     * Returns whether the slide currently holds any Swing components.
+     * @return true if a label has been built and not yet reclaimed
+     */
+    public boolean isMaterialized() {
+        return (imageLabel != null && imageLabel.get() != null)
+                || (textLabel != null && textLabel.get() != null);
+    }
+
+    /**
+     * Drops the slide's Swing components; they are rebuilt on the next display.
+     */
+    public void release() {
+        imageLabel = null;
+        textLabel = null;
+    }
+
+    // Getters and setters
+    public URL getImageSource() { return imageSource; }
+    public int getDescriptionKey() { return descriptionKey; }
+    public SlideNode getPrev() { return prev; }
+    public void setPrev(SlideNode prev) { this.prev = prev; }
+    public SlideNode getNext() { return next; }
+    public void setNext(SlideNode next) { this.next = next; }
+}
@@ -0,0 +1,125 @@
+/**
+ * File: SlidePrefetcher.java
+ * Author: Daniel Escobedo
+ * Contact: danielscobedo1122@gmail.com
+ * Date: 10/16/2024
+ * Version: 2.1
+ *
+ * Description: Schedules background decoding of the slides around the current
+ * slide so that next/previous can show an already-scaled image. The window
+ * leans towards the direction of travel, and pending decodes for slides that
+ * fall out of the window are cancelled.
+ */
+
+import java.net.URL;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntFunction;
+
+public class SlidePrefetcher {
+
+    private final SlideImagePipeline pipeline;
+    private final IntFunction<URL> sourceAt;
+    private final int depth;
+    private final ConcurrentHashMap<Integer, URL> pending = new ConcurrentHashMap<>();
+    private int lastIndex = -1;
+    private int width;
+    private int height;
+
+    /**
+     * Constructor for SlidePrefetcher.
+     * @param pipeline The image pipeline that performs the decoding
+     * @param sourceAt Maps a slide position to its image location
+     * @param depth How many slides to prefetch in the direction of travel
+     */
+    public SlidePrefetcher(SlideImagePipeline pipeline, IntFunction<URL> sourceAt, int depth) {
+        if (depth < 0) {
+            throw new IllegalArgumentException("Prefetch depth must not be negative: " + depth);
+        }
+        this.pipeline = pipeline;
+        this.sourceAt = sourceAt;
+        this.depth = depth;
+    }
+
+    /**
+     * Called after each navigation. Moving forward prefetches the full depth
+     * ahead and half of it behind, moving backward does the opposite, and a
+     * jump prefetches the full depth on both sides.
+     * Time Complexity: O(depth + p) where p is the number of pending prefetches
+     * @param index The position now being shown
+     * @param size The number of slides in the deck
+     * @param width The width slide images are scaled to
+     * @param height The height slide images are scaled to
+     */
+    public void navigated(int index, int size, int width, int height) {
+        int step = index - lastIndex;
+        int ahead = depth;
+        int behind = depth;
+        if (lastIndex >= 0 && step == 1) {
+            behind = depth / 2;
+        } else if (lastIndex >= 0 && step == -1) {
+            ahead = depth / 2;
+        }
+        lastIndex = index;
+
+        int low = Math.max(0, index - behind);
+        int high = Math.min(size - 1, index + ahead);
+
+        // Cancel prefetches the user has skipped past, or whose size is stale
+        boolean resized = width != this.width || height != this.height;
+        Iterator<Map.Entry<Integer, URL>> it = pending.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Integer, URL> entry = it.next();
+            int position = entry.getKey();
+            if (resized || (position != index && (position < low || position > high))) {
+                pipeline.cancel(entry.getValue(), this.width, this.height);
+                it.remove();
+            }
+        }
+        this.width = width;
+        this.height = height;
+
+        // Queue the nearest slides first, leading with the direction of travel
+        int lead = step < 0 ? -1 : 1;
+        for (int distance = 1; distance <= Math.max(ahead, behind); distance++) {
+            int first = index + lead * distance;
+            int second = index - lead * distance;
+            int firstLimit = lead > 0 ? ahead : behind;
+            int secondLimit = lead > 0 ? behind : ahead;
+            if (distance <= firstLimit) {
+                prefetch(first, size);
+            }
+            if (distance <= secondLimit) {
+                prefetch(second, size);
+            }
+        }
+    }
+
+    /**
+     * Cancels every pending prefetch, for example after the deck has changed.
+     */
+    public void cancelAll() {
+        Iterator<Map.Entry<Integer, URL>> it = pending.entrySet().iterator();
+        while (it.hasNext()) {
+            pipeline.cancel(it.next().getValue(), width, height);
+            it.remove();
+        }
+        lastIndex = -1;
+    }
+
+    /**
+     * Queues a single slide for decoding unless it is ready or already queued.
+     */
+    private void prefetch(int position, int size) {
+        if (position < 0 || position >= size || pending.containsKey(position)) {
+            return;
+        }
+        URL source = sourceAt.apply(position);
+        if (source == null || pipeline.getIfReady(source, width, height) != null) {
+            return;
+        }
+        pending.put(position, source);
+        pipeline.load(source, width, height).whenComplete((image, error) -> pending.remove(position, source));
+    }
+}
@@ -0,0 +1,37 @@
+/**
+ * File: SlideRepository.java
+ * Author: Daniel Escobedo
+ * Contact: danielscobedo1122@gmail.com
+ * Date: 10/16/2024
+ * Version: 2.1
+ *
+ * Description: Where a deck of slides comes from. SlideShow builds its slide
+ * list from a repository without knowing how the slides are stored: the
+ * built-in deck is held in memory by InMemorySlideRepository, and a deck
+ * packed by SlidePackWriter is read from its memory-mapped file by SlidePack.
+ * Slides are numbered from 0 in deck order.
+ */
+
+import java.net.URL;
+
+public interface SlideRepository {
+
+    /**
+     * @return The number of slides in the deck
+     */
+    int size();
+
+    /**
+     * Returns the location of a slide's image, for SlideImagePipeline to load.
+     * @param index The slide's position in the deck
+     * @return The image location
+     */
+    URL getImageSource(int index);
+
+    /**
+     * Returns a slide's description.
+     * @param index The slide's position in the deck
+     * @return The description text
+     */
+    String getDescription(int index);
+}
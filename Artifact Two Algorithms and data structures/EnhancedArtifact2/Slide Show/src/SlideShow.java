@@ -8,7 +8,7 @@
  * Description: This file contains the implementation of a slide show application
  * with enhanced algorithms for efficient navigation and slide management.
  * The application uses a doubly linked list for O(1) slide navigation and
- * implements a binary search algorithm for finding slides by index.
+ * keeps a chunked array index over the list for finding slides by index.
  * 
  * Enhancements:
  * - Fixed SlideNode implementation and usage
@@ -16,6 +16,18 @@
  * - Added binary search algorithm for O(log n) slide access by index
  * - Improved code organization and added detailed comments
  * - Implemented slide caching for frequently accessed slides
+ * - Replaced the linked-list binary search with a chunked array index so
+ *   jump-to-slide no longer walks the list on every probe
+ * - Bounded the slide cache to a fixed number of slides with LRU eviction
+ * - Decoded and pre-scaled slide images off the EDT instead of HTML <img> labels
+ * - Prefetched the neighbours of the current slide on a background pool
+ * - Built slide labels lazily on first display instead of all at startup
+ * - Measured navigation, lookup and cache paths with SlideBenchmark
+ * - Recorded frame times per slide change, with an offscreen render harness
+ * - Painted slides on one persistent canvas instead of swapping labels
+ * - Added crossfade and slide transitions and timed auto-advance
+ * - Opened decks from a memory-mapped slide pack built by SlidePackWriter
+ * - Built the deck from a SlideRepository: the built-in deck or a slide pack
  * 
  * Course Outcomes addressed:
  * 3. Design and evaluate computing solutions that solve a given problem using
@@ -29,7 +41,11 @@
 import java.awt.*;
 import java.awt.event.*;
 import javax.swing.*;
-import java.util.HashMap;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.nio.file.Paths;
 
 public class SlideShow extends JFrame {
 
@@ -42,16 +58,56 @@ public class SlideShow extends JFrame {
     private JTextField jumpIndexField;
     private SlideList slides;
     private SlideNode currentSlide;
-    private HashMap<Integer, SlideNode> slideCache; // Cache for frequently accessed slides
+    private int currentIndex; // Position of currentSlide, used to drive prefetching
+    private SlideNode displayedSlide;
+    private SlideCache<Integer, SlideNode> slideCache; // Bounded cache for frequently accessed slides
+    private SlideImagePipeline imagePipeline; // Background decoding and scaling of slide images
+    private SlidePrefetcher prefetcher; // Decodes the neighbours of the current slide ahead of time
+    private final FrameStats frameStats = new FrameStats(); // Transition, layout and paint times
+    private SlideCanvas slideCanvas; // Paints the current slide; null when rendering with components
+    private SlideTransitions transitions; // Animates slide changes and drives auto-advance
+
+    // Slides kept in the lookup cache, overridable with -Dslideshow.cache.slides. The
+    // cache only saves index lookups: SlideList keeps every slide alive and decoded
+    // images are bounded separately by the image pipeline, so it is sized by count.
+    private static final long CACHE_MAX_SLIDES = Long.getLong("slideshow.cache.slides", 256);
+    // Byte budget for decoded images, overridable with -Dslideshow.image.bytes
+    private static final long IMAGE_BUDGET_BYTES = Long.getLong("slideshow.image.bytes", 128L * 1024 * 1024);
+
+    // How slides are shown: "canvas" paints them on one persistent component,
+    // "components" swaps labels in and out; overridable with -Dslideshow.render
+    private static final boolean CANVAS_RENDERING = !"components".equals(System.getProperty("slideshow.render", "canvas"));
+
+    // Transition between slides on the canvas: "crossfade", "slide" or "none",
+    // and its length; overridable with -Dslideshow.transition and -Dslideshow.transition.ms
+    private static final SlideTransitions.Style TRANSITION =
+            SlideTransitions.Style.parse(System.getProperty("slideshow.transition", "crossfade"));
+    private static final int TRANSITION_MS = Integer.getInteger("slideshow.transition.ms", 400);
+
+    // Time each slide is shown before moving on, 0 for manual navigation only;
+    // overridable with -Dslideshow.autoAdvanceMs
+    private static final int AUTO_ADVANCE_MS = Integer.getInteger("slideshow.autoAdvanceMs", 0);
+
+    // Slide pack to show instead of the built-in deck, set with -Dslideshow.pack
+    private static final String PACK_PATH = System.getProperty("slideshow.pack");
+
+    // Slides to prefetch in the direction of travel, overridable with -Dslideshow.prefetch.depth
+    private static final int PREFETCH_DEPTH = Integer.getInteger("slideshow.prefetch.depth", 2);
+
+    // Size slide images are scaled to until the slide pane has been laid out
+    private static final int SLIDE_WIDTH = 800;
+    private static final int SLIDE_HEIGHT = 500;
 
     /**
      * Constructor for the SlideShow class.
      * Initializes the UI components and slide data structure.
      * @throws HeadlessException if GraphicsEnvironment.isHeadless() returns true
+     * @throws UncheckedIOException if no slides can be loaded
      */
     public SlideShow() throws HeadlessException {
+        slideCache = new SlideCache<>(CACHE_MAX_SLIDES, slide -> 1); // Initialize slide cache, one unit per slide
+        imagePipeline = new SlideImagePipeline(IMAGE_BUDGET_BYTES, 2);
         initComponent();
-        slideCache = new HashMap<>(); // Initialize slide cache
     }
 
     /**
@@ -65,7 +121,7 @@ public class SlideShow extends JFrame {
         setLocationRelativeTo(null);
         setTitle("SNHU Travel Presents: The Top Detox & Wellness Vacation Destinations!");
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-        getContentPane().setLayout(new BorderLayout(10, 50));
+        setContentPane(new FrameStats.FramePanel(new BorderLayout(10, 50), frameStats));
 
         // Initialize panels
         slidePane = new JPanel(new CardLayout());
@@ -73,18 +129,34 @@ public class SlideShow extends JFrame {
         textPane.setBackground(Color.WHITE);
         textPane.setBounds(5, 470, 790, 50);
         buttonPane = new JPanel(new FlowLayout(FlowLayout.CENTER, 20, 10));
+        if (CANVAS_RENDERING) {
+            slideCanvas = new SlideCanvas(frameStats);
+            transitions = slideCanvas.getTransitions();
+            transitions.setStyle(TRANSITION, TRANSITION_MS);
+        } else {
+            transitions = new SlideTransitions(slidePane, null); // Auto-advance only
+        }
+        transitions.setAutoAdvance(AUTO_ADVANCE_MS, this::autoAdvance);
 
         // Create and populate the slide list
         slides = new SlideList();
+        slides.addListener(fromIndex -> slideCache.invalidateIf(index -> index >= fromIndex));
         initializeSlides();
+        prefetcher = new SlidePrefetcher(imagePipeline, index -> slides.get(index).getImageSource(), PREFETCH_DEPTH);
+        slides.addListener(fromIndex -> prefetcher.cancelAll());
 
         // Set the current slide to the first slide
         currentSlide = slides.getHead();
+        currentIndex = 0;
         updateDisplay();
 
         // Add panels to the frame
-        getContentPane().add(slidePane, BorderLayout.CENTER);
-        getContentPane().add(textPane, BorderLayout.SOUTH);
+        if (slideCanvas != null) {
+            getContentPane().add(slideCanvas, BorderLayout.CENTER);
+        } else {
+            getContentPane().add(slidePane, BorderLayout.CENTER);
+            getContentPane().add(textPane, BorderLayout.SOUTH);
+        }
 
         // Create and add navigation buttons
         btnPrev = new JButton("Previous");
@@ -106,34 +178,156 @@ public class SlideShow extends JFrame {
     }
 
     /**
-     * Initializes the slides with images and descriptions.
+     * Initializes the slides with image locations and description keys.
+     * No Swing components are built here; each slide creates its labels the
+     * first time it is displayed. With -Dslideshow.pack the slides come from
+     * the pack, which is mapped rather than read, and the built-in deck is
+     * used if it cannot be opened. Either way they are read through the
+     * SlideRepository interface.
+     * @throws UncheckedIOException if the built-in deck cannot be loaded, since there is nothing to show
      * Time Complexity: O(n) where n is the number of slides
-     * Space Complexity: O(n) for storing n slides in the linked list
+     * Space Complexity: O(n) for storing n lightweight slides in the linked list
      */
     private void initializeSlides() {
-        for (int i = 1; i <= 5; i++) {
-            JLabel imageLabel = new JLabel(getResizeIcon(i));
-            JLabel textLabel = new JLabel(getTextDescription(i));
-            slides.addSlide(new SlideNode(imageLabel, textLabel));
+        SlidePack pack = openPack();
+        SlideRepository repository;
+        if (pack != null) {
+            imagePipeline.usePack(pack);
+            repository = pack;
+        } else {
+            try {
+                repository = InMemorySlideRepository.builtInDeck();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to load the built-in deck", e);
+            }
+        }
+        for (int i = 0; i < repository.size(); i++) {
+            slides.addSlide(new SlideNode(repository.getImageSource(i), i, repository::getDescription));
         }
     }
 
+    /**
+     * Opens the slide pack named by -Dslideshow.pack.
+     * @return The pack, or null if none is set or it cannot be used
+     */
+    private static SlidePack openPack() {
+        if (PACK_PATH == null) {
+            return null;
+        }
+        try {
+            SlidePack pack = SlidePack.open(Paths.get(PACK_PATH));
+            if (pack.size() > 0) {
+                return pack;
+            }
+            System.err.println("Slide pack " + PACK_PATH + " is empty, using the built-in deck");
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Failed to open slide pack " + PACK_PATH + ", using the built-in deck: " + e.getMessage());
+        }
+        return null;
+    }
+
     /**
      * Updates the display with the current slide's image and text.
+     * The image is swapped in from the image pipeline; if it has not been
+     * decoded yet it is loaded in the background and shown when ready.
+     * With the slide canvas this is a single repaint with no layout pass.
      * Time Complexity: O(1) - constant time operation
      * Space Complexity: O(1) - uses fixed amount of memory
      */
     private void updateDisplay() {
+        if (slideCanvas != null) {
+            // A decoded image goes in with the slide, so the transition renders it from the first frame
+            BufferedImage ready = imagePipeline.getIfReady(currentSlide.getImageSource(), slideWidth(), slideHeight());
+            slideCanvas.showSlide(currentSlide, ready, currentSlide.getDescription());
+            if (ready == null) {
+                showImage(currentSlide);
+            }
+        } else {
+            showImage(currentSlide);
+            if (displayedSlide != null && displayedSlide != currentSlide) {
+                displayedSlide.getImageLabel().setIcon(null); // Let the image cache own the pixels
+            }
+            displayedSlide = currentSlide;
+
+            showComponents(slidePane, textPane, currentSlide.getImageLabel(), currentSlide.getTextLabel());
+        }
+
+        prefetcher.navigated(currentIndex, slides.getSize(), slideWidth(), slideHeight());
+        transitions.resetAutoAdvance();
+        frameStats.navigationQueued();
+    }
+
+    /**
+     * Replaces the components shown in the slide and text panes and queues
+     * the layout and repaint. Shared with SlideRenderHarness so the offscreen
+     * measurements use the same steps.
+     * @param slidePane The pane that shows the slide image
+     * @param textPane The pane that shows the slide text
+     * @param image The image component to show
+     * @param text The text component to show
+     */
+    static void showComponents(JPanel slidePane, JPanel textPane, Component image, Component text) {
         slidePane.removeAll();
         textPane.removeAll();
-        slidePane.add(currentSlide.getImageLabel());
-        textPane.add(currentSlide.getTextLabel());
+        slidePane.add(image);
+        textPane.add(text);
         slidePane.revalidate();
         slidePane.repaint();
         textPane.revalidate();
         textPane.repaint();
     }
 
+    /**
+     * Sets a slide's image from the pipeline, loading it in the background
+     * when it is not ready yet.
+     * @param slide The slide whose image should be shown
+     */
+    private void showImage(SlideNode slide) {
+        int width = slideWidth();
+        int height = slideHeight();
+
+        BufferedImage image = imagePipeline.getIfReady(slide.getImageSource(), width, height);
+        if (image != null) {
+            displayImage(slide, image);
+            return;
+        }
+        imagePipeline.load(slide.getImageSource(), width, height).whenComplete((loaded, error) -> {
+            if (error != null) {
+                System.err.println("Failed to load slide image: " + error.getMessage());
+                return;
+            }
+            SwingUtilities.invokeLater(() -> {
+                if (slide == currentSlide) {
+                    displayImage(slide, loaded);
+                }
+            });
+        });
+    }
+
+    /**
+     * Puts a decoded image on screen for a slide.
+     * @param slide The slide the image belongs to
+     * @param image The decoded and scaled image
+     */
+    private void displayImage(SlideNode slide, BufferedImage image) {
+        if (slideCanvas != null) {
+            slideCanvas.setImage(slide, image);
+        } else {
+            slide.getImageLabel().setIcon(new ImageIcon(image));
+        }
+    }
+
+    // Size slide images are scaled to, once the slide area has been laid out
+    private int slideWidth() {
+        int width = slideCanvas != null ? slideCanvas.getImageAreaWidth() : slidePane.getWidth();
+        return width > 0 ? width : SLIDE_WIDTH;
+    }
+
+    private int slideHeight() {
+        int height = slideCanvas != null ? slideCanvas.getImageAreaHeight() : slidePane.getHeight();
+        return height > 0 ? height : SLIDE_HEIGHT;
+    }
+
     /**
      * Navigates to the previous slide if available.
      * Time Complexity: O(1) - constant time operation due to doubly linked list
@@ -141,7 +335,9 @@ public class SlideShow extends JFrame {
      */
     private void goPrevious() {
         if (currentSlide.getPrev() != null) {
+            frameStats.navigationStarted();
             currentSlide = currentSlide.getPrev();
+            currentIndex--;
             updateDisplay();
         }
     }
@@ -153,25 +349,46 @@ public class SlideShow extends JFrame {
      */
     private void goNext() {
         if (currentSlide.getNext() != null) {
+            frameStats.navigationStarted();
             currentSlide = currentSlide.getNext();
+            currentIndex++;
+            updateDisplay();
+        }
+    }
+
+    /**
+     * Moves to the next slide when the auto-advance timer fires, starting
+     * over from the first slide after the last.
+     * Time Complexity: O(1) - constant time operation due to doubly linked list
+     */
+    private void autoAdvance() {
+        if (currentSlide.getNext() != null) {
+            goNext();
+        } else if (currentSlide != slides.getHead()) {
+            frameStats.navigationStarted();
+            currentSlide = slides.getHead();
+            currentIndex = 0;
             updateDisplay();
         }
     }
 
     /**
      * Jumps to a specific slide based on the index entered by the user.
-     * Uses binary search for efficient slide lookup.
+     * Uses the chunked slide index for efficient slide lookup.
      * Time Complexity: O(log n) where n is the number of slides
      * Space Complexity: O(1) - uses fixed amount of memory
      */
     private void jumpToSlide() {
         try {
             int index = Integer.parseInt(jumpIndexField.getText()) - 1; // Convert to 0-based index
+            frameStats.navigationStarted();
             SlideNode targetSlide = findSlideByIndex(index);
             if (targetSlide != null) {
                 currentSlide = targetSlide;
+                currentIndex = index;
                 updateDisplay();
             } else {
+                frameStats.navigationCancelled();
                 JOptionPane.showMessageDialog(this, "Invalid slide index");
             }
         } catch (NumberFormatException e) {
@@ -180,78 +397,53 @@ public class SlideShow extends JFrame {
     }
 
     /**
-     * Finds a slide by its index using binary search algorithm.
-     * Time Complexity: O(log n) where n is the number of slides
+     * Finds a slide by its index using the indexed slide store.
+     * Time Complexity: O(log(n / CHUNK_SIZE)) where n is the number of slides
      * Space Complexity: O(1) - uses fixed amount of memory
      * @param index The index of the slide to find (0-based)
      * @return The SlideNode at the given index, or null if not found
      */
     private SlideNode findSlideByIndex(int index) {
+        return findSlideByIndex(slideCache, slides, index);
+    }
+
+    /**
+     * Looks a slide up in the cache, falling back to the slide index and
+     * caching what it finds. Kept separate from the UI so SlideBenchmark can
+     * measure the same path headlessly.
+     * @param cache The slide cache
+     * @param slides The slide list
+     * @param index The index of the slide to find (0-based)
+     * @return The SlideNode at the given index, or null if not found
+     */
+    static SlideNode findSlideByIndex(SlideCache<Integer, SlideNode> cache, SlideList slides, int index) {
         // Check cache first
-        if (slideCache.containsKey(index)) {
-            return slideCache.get(index);
+        SlideNode slide = cache.get(index);
+        if (slide != null) {
+            return slide;
         }
 
-        SlideNode left = slides.getHead();
-        SlideNode right = slides.getTail();
-        int leftIndex = 0;
-        int rightIndex = slides.getSize() - 1;
-
-        while (left != null && right != null && leftIndex <= rightIndex) {
-            if (leftIndex == index) {
-                slideCache.put(index, left); // Cache the result
-                return left;
-            }
-            if (rightIndex == index) {
-                slideCache.put(index, right); // Cache the result
-                return right;
-            }
-
-            int midIndex = (leftIndex + rightIndex) / 2;
-            SlideNode mid = getMiddleNode(left, right);
-
-            if (midIndex == index) {
-                slideCache.put(index, mid); // Cache the result
-                return mid;
-            } else if (midIndex < index) {
-                left = mid.getNext();
-                leftIndex = midIndex + 1;
-            } else {
-                right = mid.getPrev();
-                rightIndex = midIndex - 1;
-            }
+        slide = slides.get(index);
+        if (slide != null) {
+            cache.put(index, slide); // Cache the result
         }
-
-        return null; // Slide not found
+        return slide;
     }
 
     /**
-     * Finds the middle node between two given nodes in the doubly linked list.
-     * Time Complexity: O(k) where k is the distance between left and right nodes
-     * Space Complexity: O(1) - uses fixed amount of memory
-     * @param left The left boundary node
-     * @param right The right boundary node
-     * @return The middle node between left and right
+     * Returns the slide cache so its hit, miss and eviction counters can be read.
+     * @return The slide cache
      */
-    private SlideNode getMiddleNode(SlideNode left, SlideNode right) {
-        SlideNode slow = left;
-        SlideNode fast = left;
-
-        while (fast != right && fast.getNext() != right) {
-            slow = slow.getNext();
-            fast = fast.getNext().getNext();
-        }
-
-        return slow;
+    SlideCache<Integer, SlideNode> getSlideCache() {
+        return slideCache;
     }
 
     /**
-     * Generates the HTML string for resizing and displaying an image.
-     * @param i The index of the image to display
-     * @return HTML string containing the resized image
+     * Returns the frame-time histograms.
+     * @return The frame statistics
      */
-    private String getResizeIcon(int i) {
-        return "<html><body><img width='800' height='500' src='" + getClass().getResource("/resources/TestImage" + i + ".jpg") + "'</body></html>";
+    FrameStats getFrameStats() {
+        return frameStats;
     }
 
     /**
@@ -259,7 +451,7 @@ public class SlideShow extends JFrame {
      * @param i The index of the slide
      * @return HTML string containing the formatted description text
      */
-    private String getTextDescription(int i) {
+    static String getTextDescription(int i) {
         String[] descriptions = {
             "<html><body><font size='4'>Langkawi, Malaysia: Relax in the great outdoors</font> <br>Lovers of the great outdoors can get their travel fix in the Langkawi archipelago in Malaysia, a destination known for its staggering limestone cliffs, lush greenery, and jaw-dropping natural geological formations.</body></html>",
             "<html><body><font size='4'>Galle, Sri Lanka: Relax in historic luxury</font> <br>The city of Galle on the southwest coast of Sri Lanka is perfect for the traveler looking for a little luxury and a spot of relaxation.</body></html>",
@@ -276,82 +468,18 @@ public class SlideShow extends JFrame {
      */
     public static void main(String[] args) {
         EventQueue.invokeLater(() -> {
-            SlideShow ss = new SlideShow();
+            SlideShow ss;
+            try {
+                ss = new SlideShow();
+            } catch (UncheckedIOException e) {
+                System.err.println(e.getMessage() + ": " + e.getCause().getMessage());
+                JOptionPane.showMessageDialog(null, e.getMessage() + ":\n" + e.getCause().getMessage(),
+                        "SlideShow", JOptionPane.ERROR_MESSAGE);
+                System.exit(1);
+                return;
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(ss.getFrameStats()::printSummaryIfEnabled, "frame-stats"));
             ss.setVisible(true);
         });
     }
-}
-
-/**
- * SlideNode class represents a single slide in the presentation.
- * It contains the image and text for the slide, as well as references to the previous and next slides.
- */
-class SlideNode {
-    private JLabel imageLabel;
-    private JLabel textLabel;
-    private SlideNode prev;
-    private SlideNode next;
-
-    /**
-     * Constructor for SlideNode.
-     * @param imageLabel The JLabel containing the slide's image
-     * @param textLabel The JLabel containing the slide's description text
-     */
-    public SlideNode(JLabel imageLabel, JLabel textLabel) {
-        this.imageLabel = imageLabel;
-        this.textLabel = textLabel;
-    }
-
-    // Getters and setters
-    public JLabel getImageLabel() { return imageLabel; }
-    public JLabel getTextLabel() { return textLabel; }
-    public SlideNode getPrev() { return prev; }
-    public void setPrev(SlideNode prev) { this.prev = prev; }
-    public SlideNode getNext() { return next; }
-    public void setNext(SlideNode next) { this.next = next; }
-}
-
-/**
- * SlideList class implements a doubly linked list to manage the slides.
- * It provides methods for adding slides and accessing the first and last slides.
- */
-class SlideList {
-    private SlideNode head;
-    private SlideNode tail;
-    private int size;
-
-    /**
-     * Returns the first slide in the list.
-     * @return The head SlideNode
-     */
-    public SlideNode getHead() { return head; }
-
-    /**
-     * Returns the last slide in the list.
-     * @return The tail SlideNode
-     */
-    public SlideNode getTail() { return tail; }
-
-    /**
-     * Returns the number of slides in the list.
-     * @return The size of the slide list
-     */
-    public int getSize() { return size; }
-
-    /**
-     * Adds a new slide to the end of the list.
-     * Time Complexity: O(1) - constant time operation
-     * Space Complexity: O(1) - uses fixed amount of memory
-     * @param node The SlideNode to be added
-     */
-    public void addSlide(SlideNode node) {
-        if (head == null) {
-            head = tail = node;
-        } else {
-            tail.setNext(node);
-            node.setPrev(tail);
-            tail = node;
-        }
-        size++;
-    }
 }
\ No newline at end of file
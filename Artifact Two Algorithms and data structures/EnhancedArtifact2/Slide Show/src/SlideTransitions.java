@@ -0,0 +1,346 @@
+/**
+ * File: SlideTransitions.java
+ * Author: Daniel Escobedo
+ * Contact: danielscobedo1122@gmail.com
+ * Date: 10/16/2024
+ * Version: 2.1
+ *
+ * Description: Animated slide transitions and timed auto-advance for
+ * SlideCanvas. When a transition starts, the outgoing and incoming slides are
+ * each rendered once into an offscreen buffer (a VolatileImage when the
+ * canvas is on screen, so it can live in video memory), and every animation
+ * frame only composites the two buffers. The buffers and fade composites are
+ * reused, so frames allocate nothing. A single Swing timer drives both the
+ * animation frames and the auto-advance countdown: it ticks at 60 fps while
+ * a transition runs and otherwise sleeps until the next advance is due.
+ * Transition progress is computed from the clock rather than from the frame
+ * count, so a late tick never slows a transition down.
+ */
+
+import java.awt.AlphaComposite;
+import java.awt.Composite;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Toolkit;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+import javax.swing.JComponent;
+import javax.swing.Timer;
+
+public class SlideTransitions {
+
+    /**
+     * How one slide gives way to the next.
+     */
+    public enum Style {
+        NONE, // Hard cut
+        CROSSFADE, // The incoming slide fades in over the outgoing one
+        SLIDE; // The incoming slide pushes the outgoing one off to the left
+
+        /**
+         * Parses a style name, case-insensitively.
+         * @param name The style name, such as "crossfade"
+         * @return The style, or NONE if the name is null or unknown
+         */
+        public static Style parse(String name) {
+            for (Style style : values()) {
+                if (style.name().equalsIgnoreCase(name)) {
+                    return style;
+                }
+            }
+            return NONE;
+        }
+    }
+
+    /**
+     * Paints a full slide frame for the buffers.
+     */
+    public interface Renderer {
+        /**
+         * @param g Where to paint, already cleared to the canvas size
+         * @param incoming true for the slide being shown, false for the one it replaces
+         */
+        void render(Graphics2D g, boolean incoming);
+    }
+
+    private static final int FRAME_MS = 1000 / 60;
+    private static final int FADE_STEPS = 256;
+
+    private final JComponent target;
+    private final Renderer renderer;
+    private final Timer timer;
+    private final Buffer outgoing = new Buffer(false);
+    private final Buffer incoming = new Buffer(true);
+    private final Composite[] fades = new Composite[FADE_STEPS]; // Built on first use, then reused
+    private Style style = Style.NONE;
+    private long durationNanos;
+    private long transitionStart; // 0 when no transition is running
+    private Runnable advance;
+    private long advanceNanos; // 0 when auto-advance is off
+    private long nextAdvance;
+
+    /**
+     * Constructor for SlideTransitions.
+     * @param target The component the transitions are painted on
+     * @param renderer Paints the outgoing and incoming slides into the buffers,
+     *                 or null when only auto-advance is used
+     */
+    public SlideTransitions(JComponent target, Renderer renderer) {
+        this.target = target;
+        this.renderer = renderer;
+        timer = new Timer(FRAME_MS, e -> tick());
+        timer.setCoalesce(true); // Drop ticks the event thread could not keep up with
+    }
+
+    /**
+     * Sets the transition used for slide changes.
+     * @param style The transition style
+     * @param durationMs How long each transition takes
+     */
+    public void setStyle(Style style, int durationMs) {
+        this.style = durationMs > 0 ? style : Style.NONE;
+        this.durationNanos = durationMs * 1_000_000L;
+    }
+
+    /**
+     * Turns timed auto-advance on or off. The countdown restarts whenever a
+     * slide is shown, so manual navigation gets the full interval too.
+     * @param intervalMs How long each slide is shown, or 0 to turn auto-advance off
+     * @param advance Moves to the next slide; runs on the event dispatch thread
+     */
+    public void setAutoAdvance(int intervalMs, Runnable advance) {
+        this.advance = intervalMs > 0 ? advance : null;
+        this.advanceNanos = intervalMs > 0 ? intervalMs * 1_000_000L : 0;
+        resetAutoAdvance();
+    }
+
+    /**
+     * Restarts the auto-advance countdown. Call whenever a slide is shown.
+     */
+    public void resetAutoAdvance() {
+        nextAdvance = System.nanoTime() + advanceNanos;
+        schedule();
+    }
+
+    /**
+     * Starts a transition from the slide the target was showing to the one
+     * it now holds. Both slides are rendered into the buffers here, ahead of
+     * the first animation frame. A transition already running is replaced,
+     * starting from its incoming slide.
+     * Must be called on the event dispatch thread.
+     * @return true if a transition is running, false for a hard cut
+     */
+    public boolean start() {
+        if (style == Style.NONE || renderer == null || target.getWidth() <= 0 || target.getHeight() <= 0) {
+            transitionStart = 0;
+            return false;
+        }
+        outgoing.dirty = true;
+        incoming.dirty = true;
+        outgoing.prepare();
+        incoming.prepare();
+        transitionStart = System.nanoTime();
+        schedule();
+        return true;
+    }
+
+    /**
+     * Ends any running transition, so the target paints normally.
+     */
+    public void cancel() {
+        if (transitionStart != 0) {
+            transitionStart = 0;
+            schedule();
+        }
+    }
+
+    /**
+     * Marks the incoming slide as changed, such as when its image arrives
+     * while the transition is running, so its buffer is rendered again.
+     */
+    public void incomingChanged() {
+        incoming.dirty = true;
+    }
+
+    /**
+     * @return true while a transition is running
+     */
+    public boolean isRunning() {
+        return transitionStart != 0;
+    }
+
+    /**
+     * Paints the current transition frame.
+     * @param g The target's graphics
+     * @return false if no transition is running and the caller should paint normally
+     */
+    public boolean paint(Graphics g) {
+        if (transitionStart == 0) {
+            return false;
+        }
+        float progress = Math.min(1f, (System.nanoTime() - transitionStart) / (float) durationNanos);
+        float eased = progress * progress * (3 - 2 * progress); // Smoothstep
+        Image from = outgoing.prepare();
+        Image to = incoming.prepare();
+        int width = target.getWidth();
+
+        if (style == Style.SLIDE) {
+            int offset = Math.round(width * eased);
+            g.drawImage(from, -offset, 0, null);
+            g.drawImage(to, width - offset, 0, null);
+        } else {
+            g.drawImage(from, 0, 0, null);
+            Graphics2D g2 = (Graphics2D) g;
+            Composite previous = g2.getComposite();
+            g2.setComposite(fade(eased));
+            g2.drawImage(to, 0, 0, null);
+            g2.setComposite(previous);
+        }
+        outgoing.checkLost();
+        incoming.checkLost();
+        Toolkit.getDefaultToolkit().sync(); // Flush the frame now rather than when the pipeline fills
+        return true;
+    }
+
+    /**
+     * Stops the timer and releases the buffers.
+     */
+    public void dispose() {
+        timer.stop();
+        transitionStart = 0;
+        advance = null;
+        outgoing.flush();
+        incoming.flush();
+    }
+
+    /**
+     * Runs on every timer tick: repaints the next transition frame, or ends
+     * the transition, and advances the slide when it is due.
+     */
+    private void tick() {
+        long now = System.nanoTime();
+        if (transitionStart != 0) {
+            if (now - transitionStart >= durationNanos) {
+                transitionStart = 0;
+            }
+            target.repaint();
+        } else if (advance != null && now - nextAdvance >= 0) {
+            advance.run(); // Shows a slide, which resets the countdown
+            if (now - nextAdvance >= 0) {
+                resetAutoAdvance(); // Nothing was shown, such as at the end of the deck
+            }
+            return;
+        }
+        schedule();
+    }
+
+    /**
+     * Sets the timer for the next thing that needs it: the next animation
+     * frame, the next auto-advance, or nothing.
+     */
+    private void schedule() {
+        int delay;
+        if (transitionStart != 0) {
+            delay = FRAME_MS;
+        } else if (advance != null) {
+            delay = (int) Math.max(1, (nextAdvance - System.nanoTime()) / 1_000_000L);
+        } else {
+            timer.stop();
+            return;
+        }
+        if (timer.isRunning() && timer.getDelay() == delay && delay == FRAME_MS) {
+            return; // Already ticking at the frame rate
+        }
+        timer.setInitialDelay(delay);
+        timer.setDelay(delay);
+        timer.restart();
+    }
+
+    private Composite fade(float alpha) {
+        int step = Math.min(FADE_STEPS - 1, Math.round(alpha * (FADE_STEPS - 1)));
+        if (fades[step] == null) {
+            fades[step] = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, step / (float) (FADE_STEPS - 1));
+        }
+        return fades[step];
+    }
+
+    /**
+     * An offscreen copy of one slide, the size of the target. It is a
+     * VolatileImage when the target is displayable and a BufferedImage
+     * otherwise, such as offscreen. Video memory can be lost at any time, so
+     * the buffer is checked and rendered again when that happens.
+     */
+    private class Buffer {
+        private final boolean incomingSlide;
+        private Image image;
+        private boolean dirty = true;
+
+        private Buffer(boolean incomingSlide) {
+            this.incomingSlide = incomingSlide;
+        }
+
+        /**
+         * Returns the buffer, creating or rendering it first if needed.
+         */
+        private Image prepare() {
+            int width = target.getWidth();
+            int height = target.getHeight();
+            if (image == null || image.getWidth(null) != width || image.getHeight(null) != height) {
+                flush();
+                image = create(width, height);
+                dirty = true;
+            }
+            if (image instanceof VolatileImage) {
+                VolatileImage volatileImage = (VolatileImage) image;
+                GraphicsConfiguration config = target.getGraphicsConfiguration();
+                int status = config == null ? VolatileImage.IMAGE_OK : volatileImage.validate(config);
+                if (status == VolatileImage.IMAGE_INCOMPATIBLE) {
+                    flush();
+                    image = create(width, height);
+                    dirty = true;
+                } else if (status == VolatileImage.IMAGE_RESTORED) {
+                    dirty = true;
+                }
+            }
+            if (dirty) {
+                Graphics2D g = (Graphics2D) image.getGraphics();
+                try {
+                    g.setClip(0, 0, width, height); // Text views paint against the clip
+                    g.setColor(target.getBackground());
+                    g.fillRect(0, 0, width, height);
+                    g.setColor(target.getForeground());
+                    g.setFont(target.getFont());
+                    renderer.render(g, incomingSlide);
+                } finally {
+                    g.dispose();
+                }
+                dirty = false;
+            }
+            return image;
+        }
+
+        /**
+         * Marks the buffer for rendering again if its video memory was lost
+         * while it was being drawn.
+         */
+        private void checkLost() {
+            if (image instanceof VolatileImage && ((VolatileImage) image).contentsLost()) {
+                dirty = true;
+            }
+        }
+
+        private Image create(int width, int height) {
+            Image created = target.createVolatileImage(width, height); // Null when not displayable
+            return created != null ? created : new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        }
+
+        private void flush() {
+            if (image != null) {
+                image.flush();
+                image = null;
+            }
+        }
+    }
+}